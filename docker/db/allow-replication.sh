@@ -0,0 +1,4 @@
+#!/bin/sh
+# Lets db-replica stream the WAL of this database. Runs only when the data volume is initialized, recreate the
+# webflux_data volume of an existing setup to pick it up.
+echo "host replication all all scram-sha-256" >> "$PGDATA/pg_hba.conf"
@@ -0,0 +1,78 @@
+package com.github.fdkvandr.springwebfluxexample.controller;
+
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeCache;
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeSuggestIndex;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.metrics.ServiceMetrics;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeBatchLoader;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeService;
+import com.github.fdkvandr.springwebfluxexample.service.ConcurrencyLimiter;
+import com.github.fdkvandr.springwebfluxexample.service.OperationDeadlines;
+import com.github.fdkvandr.springwebfluxexample.util.StubAnimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.reactive.server.WebTestClient;
+import reactor.blockhound.BlockHound;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end throughput of the WebFlux pipeline (handler mapping, argument resolution, codecs) through
+ * {@link WebTestClient}, with and without BlockHound instrumentation. Every parameter value runs in its own fork since
+ * BlockHound can not be uninstalled.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnimeControllerBenchmark {
+
+    @Param({"false", "true"})
+    private boolean blockHound;
+
+    private WebTestClient testClient;
+
+    @Setup
+    public void setUp() {
+        if (blockHound)
+            BlockHound.install();
+        AnimeProperties animeProperties = new AnimeProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AnimeRepository animeRepository = StubAnimeRepository.create(StubAnimeRepository.catalogue(1_000));
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(animeProperties, meterRegistry);
+        OperationDeadlines operationDeadlines = new OperationDeadlines(animeProperties);
+        AnimeService animeService = new AnimeService(animeRepository, animeProperties,
+                new AnimeCache(animeProperties, meterRegistry),
+                new AnimeBatchLoader(animeRepository, concurrencyLimiter, operationDeadlines, animeProperties,
+                        meterRegistry),
+                new AnimeSuggestIndex(animeRepository, animeProperties, meterRegistry), new ServiceMetrics(meterRegistry), null,
+                concurrencyLimiter, operationDeadlines);
+        testClient = WebTestClient.bindToController(new AnimeController(animeService, null, null)).build();
+    }
+
+    @Benchmark
+    public Anime findById() {
+        return testClient.get()
+                .uri("/animes/{id}", 42)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(Anime.class)
+                .returnResult()
+                .getResponseBody();
+    }
+
+    @Benchmark
+    public List<Anime> findAllNdjson() {
+        return testClient.get()
+                .uri("/animes")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(Anime.class)
+                .returnResult()
+                .getResponseBody();
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnimeJsonBenchmark {
+
+    private ObjectMapper objectMapper;
+    private Anime anime;
+    private byte[] json;
+
+    @Setup
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        anime = new Anime(1, "Hellsing", 0L);
+        json = objectMapper.writeValueAsBytes(anime);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return objectMapper.writeValueAsBytes(anime);
+    }
+
+    @Benchmark
+    public Anime decode() throws IOException {
+        return objectMapper.readValue(json, Anime.class);
+    }
+}
@@ -0,0 +1,39 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import com.github.fdkvandr.springwebfluxexample.security.HasAuthorityAuthorizationManager;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class UserAuthoritiesBenchmark {
+
+    private final HasAuthorityAuthorizationManager admin = HasAuthorityAuthorizationManager.hasRole("ADMIN");
+
+    private User user;
+    private Mono<Authentication> authentication;
+
+    @Setup
+    public void setUp() {
+        user = new User(1, "Andrey", "fdkvandr", "{noop}password", "ROLE_USER,ROLE_ADMIN");
+        authentication = Mono.just(UsernamePasswordAuthenticationToken.authenticated(user, user.getPassword(), user.getAuthorities()));
+    }
+
+    @Benchmark
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return user.getAuthorities();
+    }
+
+    @Benchmark
+    public AuthorizationDecision hasRole() {
+        return admin.check(authentication, null).block();
+    }
+}
@@ -0,0 +1,43 @@
+package com.github.fdkvandr.springwebfluxexample.exception;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.boot.autoconfigure.web.WebProperties;
+import org.springframework.context.support.StaticApplicationContext;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerCodecConfigurer;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@code formatErrorResponse} through the public {@link GlobalExceptionHandler#handle} entry point, including
+ * the error attributes and JSON rendering of the response body.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GlobalExceptionHandlerBenchmark {
+
+    private final ResponseStatusException notFound = new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found");
+
+    private GlobalExceptionHandler globalExceptionHandler;
+
+    @Setup
+    public void setUp() throws Exception {
+        StaticApplicationContext applicationContext = new StaticApplicationContext();
+        applicationContext.refresh();
+        globalExceptionHandler = new GlobalExceptionHandler(new CustomAttributes(), new WebProperties(),
+                applicationContext, ServerCodecConfigurer.create(), new SimpleMeterRegistry());
+        globalExceptionHandler.afterPropertiesSet();
+    }
+
+    @Benchmark
+    public MockServerWebExchange formatErrorResponse() {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1"));
+        globalExceptionHandler.handle(exchange, notFound).block();
+        return exchange;
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeCache;
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeSuggestIndex;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimePage;
+import com.github.fdkvandr.springwebfluxexample.metrics.ServiceMetrics;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.util.StubAnimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class AnimeServiceBenchmark {
+
+    private AnimeService animeService;
+    private List<Anime> batch;
+
+    @Setup
+    public void setUp() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        AnimeRepository animeRepository = StubAnimeRepository.create(StubAnimeRepository.catalogue(1_000));
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(animeProperties, meterRegistry);
+        OperationDeadlines operationDeadlines = new OperationDeadlines(animeProperties);
+        animeService = new AnimeService(animeRepository, animeProperties, new AnimeCache(animeProperties, meterRegistry),
+                new AnimeBatchLoader(animeRepository, concurrencyLimiter, operationDeadlines, animeProperties,
+                        meterRegistry),
+                new AnimeSuggestIndex(animeRepository, animeProperties, meterRegistry), new ServiceMetrics(meterRegistry), null,
+                concurrencyLimiter, operationDeadlines);
+        batch = StubAnimeRepository.catalogue(100).stream()
+                .map(anime -> anime.withId(null))
+                .toList();
+    }
+
+    @Benchmark
+    public Anime findById() {
+        return animeService.findById(42).block();
+    }
+
+    @Benchmark
+    public AnimePage findPage() {
+        return animeService.findPage(null, 20).block();
+    }
+
+    @Benchmark
+    public List<Anime> findAll() {
+        return animeService.findAll().collectList().block();
+    }
+
+    @Benchmark
+    public List<Anime> batchSave() {
+        return animeService.batchSave(batch).collectList().block();
+    }
+}
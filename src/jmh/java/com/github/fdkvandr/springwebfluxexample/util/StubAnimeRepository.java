@@ -0,0 +1,72 @@
+package com.github.fdkvandr.springwebfluxexample.util;
+
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepositoryCustom.ScoredAnime;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+/**
+ * In-memory {@link AnimeRepository} answering from a fixed catalogue, so benchmarks measure the service and web layers
+ * without a database or mocking framework in the way.
+ */
+public final class StubAnimeRepository {
+
+    private StubAnimeRepository() {
+    }
+
+    public static List<Anime> catalogue(int size) {
+        return IntStream.rangeClosed(1, size)
+                .mapToObj(id -> new Anime(id, "Anime " + id, 0L))
+                .toList();
+    }
+
+    /**
+     * Answers from a catalogue built by {@link #catalogue(int)}, looking animes up by their position.
+     */
+    @SuppressWarnings("unchecked")
+    public static AnimeRepository create(List<Anime> catalogue) {
+        return (AnimeRepository) Proxy.newProxyInstance(AnimeRepository.class.getClassLoader(),
+                new Class<?>[]{AnimeRepository.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "findById" -> Mono.justOrEmpty(find(catalogue, (int) args[0]));
+                    case "existsById" -> Mono.just(find(catalogue, (int) args[0]).isPresent());
+                    case "findByIds" -> Flux.fromArray((Integer[]) args[0])
+                            .flatMapIterable(id -> find(catalogue, id).stream().toList());
+                    case "findVersionById" -> Mono.justOrEmpty(find(catalogue, (int) args[0]).map(Anime::getVersion));
+                    case "findCollectionStamp" -> Mono.just(catalogue.size() + "-" + catalogue.size() + "-0");
+                    case "findAll", "streamAll" -> Flux.fromIterable(catalogue);
+                    case "count" -> Mono.just((long) catalogue.size());
+                    case "findPageAfter" -> Flux.fromIterable(catalogue)
+                            .filter(anime -> anime.getId() > (int) args[0])
+                            .take((int) args[1]);
+                    case "search" -> Flux.fromIterable(catalogue)
+                            .filter(anime -> anime.getName().toLowerCase().startsWith(((String) args[0]).toLowerCase()))
+                            .filter(anime -> anime.getId() > (int) args[2])
+                            .take((int) args[3])
+                            .map(anime -> new ScoredAnime(anime, 2f));
+                    case "save" -> Mono.just(args[0]);
+                    case "insertAll" -> Flux.fromIterable((List<Anime>) args[0])
+                            .index((index, anime) -> anime.withId(index.intValue() + 1));
+                    case "copyAll", "copyAndMerge" -> ((Flux<Anime>) args[0]).count();
+                    case "updateName", "updateNameIfVersion" -> Mono.justOrEmpty(find(catalogue, (int) args[0])
+                            .map(anime -> new Anime(anime.getId(), (String) args[1], anime.getVersion() + 1)));
+                    case "deleteAndReturnId", "deleteAndReturnIdIfVersion" -> Mono.justOrEmpty(find(catalogue, (int) args[0])
+                            .map(Anime::getId));
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    case "toString" -> "StubAnimeRepository";
+                    // the remaining CRUD methods write or look up nothing a benchmark depends on
+                    default -> Flux.class.isAssignableFrom(method.getReturnType()) ? Flux.empty() : Mono.empty();
+                });
+    }
+
+    private static Optional<Anime> find(List<Anime> catalogue, int id) {
+        return id >= 1 && id <= catalogue.size() ? Optional.of(catalogue.get(id - 1)) : Optional.empty();
+    }
+}
@@ -1,10 +1,13 @@
 package com.github.fdkvandr.springwebfluxexample;
 
+import com.github.fdkvandr.springwebfluxexample.metrics.BlockHoundMetrics;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 import reactor.blockhound.BlockHound;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class SpringWebfluxExampleApplication {
 
 	static {
@@ -13,6 +16,7 @@ public class SpringWebfluxExampleApplication {
 						.allowBlockingCallsInside("java.io.InputStream", "readNBytes")
 						.allowBlockingCallsInside("java.io.FilterInputStream", "read")
 						.allowBlockingCallsInside("java.lang.reflect.Method", "invoke")
+						.blockingMethodCallback(BlockHoundMetrics::onBlockingCall)
 		);
 	}
 
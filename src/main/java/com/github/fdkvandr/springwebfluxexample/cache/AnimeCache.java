@@ -0,0 +1,74 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.function.IntFunction;
+
+/**
+ * Size bounded, TTL evicting cache of animes by id. Concurrent misses for the same id share one load, hit/miss
+ * statistics are published as {@code cache.*} meters with {@code cache=anime}. Invalidated ids are remembered for the
+ * primary read window, see {@link #isRecentlyInvalidated(int)}.
+ */
+@Component
+public class AnimeCache {
+
+    private final AsyncCache<Integer, Anime> cache;
+    private final PrimaryReadWindow<Integer> primaryReadWindow;
+
+    public AnimeCache(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        AnimeProperties.Cache properties = animeProperties.getCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+        this.primaryReadWindow = new PrimaryReadWindow<>(animeProperties.getInvalidation().getPrimaryReadWindow(),
+                properties.getMaximumSize());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "anime");
+    }
+
+    /**
+     * Returns the cached anime or loads it. An empty load is not cached.
+     */
+    public Mono<Anime> get(int id, IntFunction<Mono<Anime>> loader) {
+        // the future is shared by all concurrent callers, a copy keeps one cancelled subscriber from cancelling the load
+        return Mono.fromFuture(() -> cache.get(id, (key, executor) -> loader.apply(key).toFuture()).copy());
+    }
+
+    /**
+     * Returns the cached anime without loading it, {@code null} when it is not cached or still loading.
+     */
+    public Anime getIfPresent(int id) {
+        CompletableFuture<Anime> anime = cache.getIfPresent(id);
+        return anime != null && anime.isDone() && !anime.isCompletedExceptionally() ? anime.getNow(null) : null;
+    }
+
+    public void put(Anime anime) {
+        cache.put(anime.getId(), CompletableFuture.completedFuture(anime));
+    }
+
+    public void invalidate(int id) {
+        primaryReadWindow.invalidated(id);
+        cache.synchronous().invalidate(id);
+    }
+
+    public void invalidateAll() {
+        primaryReadWindow.allInvalidated();
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Whether the anime was invalidated within the primary read window, see {@link PrimaryReadWindow}.
+     */
+    public boolean isRecentlyInvalidated(int id) {
+        return primaryReadWindow.contains(id);
+    }
+}
@@ -0,0 +1,259 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.BaseUnits;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-process prefix index over the lower-cased anime names, answering autocomplete without touching the database.
+ * Built from the whole table once the application is ready and rebuilt periodically into a fresh snapshot that
+ * replaces the served one atomically. Writes through {@code AnimeService} are applied incrementally in between, to the
+ * served snapshot and to one being built, those of the other instances once {@link CacheInvalidationBus} received
+ * them. The estimated heap usage and the number of entries are published as
+ * {@code anime.suggest.memory} and {@code anime.suggest.size}.
+ */
+@Slf4j
+@Component
+public class AnimeSuggestIndex {
+
+    /**
+     * Rough per-entry cost of the skip list node and index levels, the key, the anime and the id map entry.
+     */
+    private static final long ENTRY_BYTES = 200;
+
+    private final AnimeRepository animeRepository;
+    private final AnimeProperties.Suggest properties;
+    private final int fetchSize;
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+    private final AtomicBoolean rebuildPending = new AtomicBoolean();
+    private final Set<Integer> deletedWhileBuilding = new HashSet<>();
+    private volatile Snapshot snapshot;
+    private Snapshot building;
+    private Disposable refresher;
+
+    public AnimeSuggestIndex(AnimeRepository animeRepository, AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        this.animeRepository = animeRepository;
+        this.properties = animeProperties.getSuggest();
+        this.fetchSize = animeProperties.getExport().getFetchSize();
+        Gauge.builder("anime.suggest.memory", this, index -> index.snapshot == null ? 0 : index.snapshot.bytes.get())
+                .description("Estimated heap used by the autocomplete index")
+                .baseUnit(BaseUnits.BYTES)
+                .register(meterRegistry);
+        Gauge.builder("anime.suggest.size", this, index -> index.snapshot == null ? 0 : index.snapshot.byName.size())
+                .description("Names in the autocomplete index")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled())
+            return;
+        refresher = Flux.interval(Duration.ZERO, properties.getRebuildInterval())
+                .onBackpressureDrop()
+                .concatMap(tick -> rebuild())
+                .subscribe();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (refresher != null)
+            refresher.dispose();
+    }
+
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /**
+     * Names starting with the lower-cased prefix in alphabetical order, empty while the index is not built yet.
+     */
+    public List<Anime> suggest(String prefix, int limit) {
+        Snapshot current = snapshot;
+        if (current == null)
+            return List.of();
+        String normalized = prefix.toLowerCase(Locale.ROOT);
+        return current.byName.subMap(new Key(normalized, Integer.MIN_VALUE), true,
+                        new Key(normalized + Character.MAX_VALUE, Integer.MIN_VALUE), false)
+                .values()
+                .stream()
+                .limit(limit)
+                .toList();
+    }
+
+    public synchronized void put(Anime anime) {
+        if (snapshot != null)
+            snapshot.put(anime);
+        if (building != null)
+            building.put(anime);
+    }
+
+    public synchronized void remove(int id) {
+        if (snapshot != null)
+            snapshot.remove(id);
+        if (building != null) {
+            building.remove(id);
+            deletedWhileBuilding.add(id);
+        }
+    }
+
+    /**
+     * Applies writes made on another instance, of which only the ids are known: the animes are read again from the
+     * primary and the ones that are gone are removed. A failed read leaves them to the next rebuild.
+     */
+    public Mono<Void> refresh(Set<Integer> ids) {
+        if (!properties.isEnabled() || ids.isEmpty())
+            return Mono.empty();
+        return Flux.defer(() -> animeRepository.findByIds(ids.toArray(Integer[]::new)))
+                .collectMap(Anime::getId)
+                .doOnNext(found -> apply(ids, found))
+                .onErrorResume(e -> {
+                    log.warn("Could not refresh {} animes of the autocomplete index", ids.size(), e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private synchronized void apply(Set<Integer> ids, Map<Integer, Anime> found) {
+        for (Integer id : ids) {
+            Anime anime = found.get(id);
+            if (anime == null)
+                remove(id);
+            else
+                put(anime);
+        }
+    }
+
+    /**
+     * Starts a rebuild in the background, for writes that bypass {@code AnimeService}. While one is running another
+     * one follows it, since the running scan may have started before the writes committed.
+     */
+    public void requestRebuild() {
+        if (properties.isEnabled())
+            rebuild().subscribe();
+    }
+
+    /**
+     * Loads the whole table into a new snapshot and serves it once complete. When a rebuild is already running it
+     * completes right away and another rebuild starts once the running one finished. A failed rebuild keeps serving
+     * the previous snapshot.
+     */
+    public Mono<Void> rebuild() {
+        return Mono.defer(() -> {
+            // marked before trying to start, so a rebuild finishing concurrently either sees the mark or lets this one run
+            rebuildPending.set(true);
+            if (!rebuilding.compareAndSet(false, true))
+                return Mono.empty();
+            rebuildPending.set(false);
+            Snapshot next = new Snapshot();
+            synchronized (this) {
+                building = next;
+                deletedWhileBuilding.clear();
+            }
+            long start = System.nanoTime();
+            // scans the primary, a lagging replica would drop the writes the rebuild was requested for
+            return Flux.defer(() -> animeRepository.streamAll(fetchSize))
+                    .doOnNext(anime -> add(next, anime))
+                    .then(Mono.fromRunnable(() -> publish(next, start)))
+                    .onErrorResume(e -> {
+                        log.warn("Could not rebuild the autocomplete index", e);
+                        return Mono.empty();
+                    })
+                    .doFinally(signal -> {
+                        synchronized (this) {
+                            if (building == next)
+                                building = null;
+                        }
+                        rebuilding.set(false);
+                        if (rebuildPending.get())
+                            rebuild().subscribe();
+                    })
+                    .then();
+        });
+    }
+
+    private synchronized void add(Snapshot next, Anime anime) {
+        // rows deleted after the scan read them must not come back with the new snapshot
+        if (!deletedWhileBuilding.contains(anime.getId()))
+            next.put(anime);
+    }
+
+    private synchronized void publish(Snapshot next, long start) {
+        snapshot = next;
+        building = null;
+        log.info("Built the autocomplete index with {} names in {} ms", next.byName.size(),
+                Duration.ofNanos(System.nanoTime() - start).toMillis());
+    }
+
+    private record Key(String name, int id) implements Comparable<Key> {
+
+        @Override
+        public int compareTo(Key other) {
+            int byName = name.compareTo(other.name);
+            return byName != 0 ? byName : Integer.compare(id, other.id);
+        }
+    }
+
+    /**
+     * Only modified while holding the index monitor, the skip list is read concurrently by suggest.
+     */
+    private static final class Snapshot {
+
+        private final ConcurrentSkipListMap<Key, Anime> byName = new ConcurrentSkipListMap<>();
+        private final Map<Integer, Key> byId = new HashMap<>();
+        private final AtomicLong bytes = new AtomicLong();
+
+        void put(Anime anime) {
+            Key previous = byId.get(anime.getId());
+            if (previous != null) {
+                // the scan of a rebuild may read a row that was updated after it, the newer version wins
+                if (version(byName.get(previous)) > version(anime))
+                    return;
+                remove(anime.getId());
+            }
+            // toLowerCase returns the name itself when it is lower case already, so the key shares its characters
+            Key key = new Key(anime.getName().toLowerCase(Locale.ROOT), anime.getId());
+            byName.put(key, anime);
+            byId.put(anime.getId(), key);
+            bytes.addAndGet(bytes(key, anime));
+        }
+
+        void remove(int id) {
+            Key key = byId.remove(id);
+            if (key == null)
+                return;
+            Anime anime = byName.remove(key);
+            bytes.addAndGet(-bytes(key, anime));
+        }
+
+        private static long version(Anime anime) {
+            return anime == null || anime.getVersion() == null ? -1 : anime.getVersion();
+        }
+
+        private static long bytes(Key key, Anime anime) {
+            long characters = anime.getName().length() + (key.name() == anime.getName() ? 0 : key.name().length());
+            return ENTRY_BYTES + 2 * characters;
+        }
+    }
+}
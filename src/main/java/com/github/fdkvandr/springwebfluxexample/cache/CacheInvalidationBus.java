@@ -0,0 +1,237 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener.ChannelNotification;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the local caches of all instances coherent over Postgres {@code NOTIFY}, without any other infrastructure.
+ * Keys invalidated on this instance are gathered for a short window, coalesced and sent as one message on
+ * {@value #CHANNEL}. Messages of the other instances are applied to {@link AnimeCache}, {@link UserCache} and
+ * {@link AnimeSuggestIndex}. The caches are flushed completely, and the index rebuilt, whenever the listener connection
+ * is (re)established, since messages sent while it was down are lost. Invalidated keys are loaded from the primary
+ * for a short while afterwards, see {@link PrimaryReadWindow}. The delay between sending and applying a message is
+ * published as {@code cache.invalidation.lag}, measured with the wall clocks of both instances.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    static final String CHANNEL = "cache_invalidation";
+    /**
+     * Postgres rejects payloads of 8000 bytes and more, larger messages flush the affected caches instead.
+     */
+    private static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private final String node = UUID.randomUUID().toString();
+    private final PostgresNotificationListener notificationListener;
+    private final DatabaseClient databaseClient;
+    private final ObjectMapper objectMapper;
+    private final AnimeCache animeCache;
+    private final UserCache userCache;
+    private final AnimeSuggestIndex animeSuggestIndex;
+    private final AnimeProperties.Invalidation properties;
+    private final Timer lag;
+    private final Counter sent;
+    private final Counter received;
+    private final Counter flushes;
+    private final Disposable.Composite subscriptions = Disposables.composite();
+    private volatile FluxSink<Key> outbox;
+
+    public CacheInvalidationBus(PostgresNotificationListener notificationListener,
+                                DatabaseClient databaseClient,
+                                ObjectMapper objectMapper,
+                                AnimeCache animeCache,
+                                UserCache userCache,
+                                AnimeSuggestIndex animeSuggestIndex,
+                                AnimeProperties animeProperties,
+                                MeterRegistry meterRegistry) {
+        this.notificationListener = notificationListener;
+        this.databaseClient = databaseClient;
+        this.objectMapper = objectMapper;
+        this.animeCache = animeCache;
+        this.userCache = userCache;
+        this.animeSuggestIndex = animeSuggestIndex;
+        this.properties = animeProperties.getInvalidation();
+        this.lag = Timer.builder("cache.invalidation.lag")
+                .description("Time from sending an invalidation on one instance to applying it on another")
+                .register(meterRegistry);
+        this.sent = Counter.builder("cache.invalidation.messages")
+                .tag("direction", "sent")
+                .register(meterRegistry);
+        this.received = Counter.builder("cache.invalidation.messages")
+                .tag("direction", "received")
+                .register(meterRegistry);
+        this.flushes = Counter.builder("cache.invalidation.flushes")
+                .description("Full flushes after the listener connection was (re)established")
+                .register(meterRegistry);
+        // created here rather than on startup, so writes made before the application is ready are announced too
+        if (properties.isEnabled())
+            subscriptions.add(Flux.<Key>create(sink -> outbox = sink)
+                    .bufferTimeout(properties.getMaxKeys(), properties.getWindow())
+                    .onBackpressureBuffer()
+                    .concatMap(this::send)
+                    // send() handles a failed NOTIFY, whatever else breaks the outbox must not stop later invalidations
+                    .doOnError(e -> log.error("Cache invalidation outbox failed, restarting", e))
+                    .retry()
+                    .subscribe());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!properties.isEnabled())
+            return;
+        subscriptions.add(notificationListener.listen(CHANNEL)
+                .subscribe(this::receive));
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscriptions.dispose();
+    }
+
+    /**
+     * Invalidates the anime on the other instances.
+     */
+    public void publishAnime(int id) {
+        publish(new Key(Kind.ANIME, id));
+    }
+
+    /**
+     * Invalidates the user on the other instances.
+     */
+    public void publishUser(String username) {
+        publish(new Key(Kind.USER, username));
+    }
+
+    /**
+     * Flushes the user cache of the other instances.
+     */
+    public void publishAllUsers() {
+        publish(new Key(Kind.USER, null));
+    }
+
+    private void publish(Key key) {
+        // null while disabled
+        FluxSink<Key> sink = outbox;
+        if (sink != null)
+            sink.next(key);
+    }
+
+    private Mono<Void> send(List<Key> keys) {
+        return Mono.fromCallable(() -> payload(coalesce(keys)))
+                .flatMap(payload -> databaseClient.sql("SELECT pg_notify(:channel, :payload)")
+                        .bind("channel", CHANNEL)
+                        .bind("payload", payload)
+                        .then())
+                .doOnSuccess(done -> sent.increment())
+                .onErrorResume(e -> {
+                    // the other instances serve these keys until the entries expire
+                    log.warn("Could not send {} cache invalidations", keys.size(), e);
+                    return Mono.empty();
+                });
+    }
+
+    private Message coalesce(List<Key> keys) {
+        boolean allAnimes = false;
+        boolean allUsers = false;
+        Set<Integer> animes = new HashSet<>();
+        Set<String> users = new HashSet<>();
+        for (Key key : keys) {
+            switch (key.kind()) {
+                case ANIME -> {
+                    if (key.value() == null)
+                        allAnimes = true;
+                    else
+                        animes.add((Integer) key.value());
+                }
+                case USER -> {
+                    if (key.value() == null)
+                        allUsers = true;
+                    else
+                        users.add((String) key.value());
+                }
+            }
+        }
+        return new Message(node, System.currentTimeMillis(),
+                allAnimes, allAnimes ? Set.of() : animes,
+                allUsers, allUsers ? Set.of() : users);
+    }
+
+    private String payload(Message message) throws JsonProcessingException {
+        String payload = objectMapper.writeValueAsString(message);
+        if (payload.getBytes(StandardCharsets.UTF_8).length < MAX_PAYLOAD_BYTES)
+            return payload;
+        return objectMapper.writeValueAsString(new Message(message.node(), message.sentAt(),
+                message.allAnimes() || !message.animes().isEmpty(), Set.of(),
+                message.allUsers() || !message.users().isEmpty(), Set.of()));
+    }
+
+    private void receive(ChannelNotification notification) {
+        if (notification.isReconnect()) {
+            flushes.increment();
+            animeCache.invalidateAll();
+            userCache.invalidateAll();
+            animeSuggestIndex.requestRebuild();
+            return;
+        }
+        Message message;
+        try {
+            message = objectMapper.readValue(notification.payload(), Message.class);
+        } catch (JsonProcessingException e) {
+            log.warn("Ignoring malformed cache invalidation {}", notification.payload(), e);
+            return;
+        }
+        if (node.equals(message.node()))
+            return;
+        if (message.allAnimes()) {
+            animeCache.invalidateAll();
+            animeSuggestIndex.requestRebuild();
+        } else {
+            message.animes().forEach(animeCache::invalidate);
+            animeSuggestIndex.refresh(message.animes()).subscribe();
+        }
+        if (message.allUsers())
+            userCache.invalidateAll();
+        else
+            message.users().forEach(userCache::invalidate);
+        received.increment();
+        lag.record(Math.max(0, System.currentTimeMillis() - message.sentAt()), TimeUnit.MILLISECONDS);
+    }
+
+    private enum Kind {
+        ANIME, USER
+    }
+
+    /**
+     * A key to invalidate, {@code null} for the whole cache.
+     */
+    private record Key(Kind kind, Object value) {
+    }
+
+    record Message(String node, long sentAt, boolean allAnimes, Set<Integer> animes, boolean allUsers, Set<String> users) {
+    }
+}
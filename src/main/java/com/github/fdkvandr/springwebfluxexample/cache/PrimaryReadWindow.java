@@ -0,0 +1,38 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+
+import java.time.Duration;
+
+/**
+ * Keys of a cache that were invalidated within the last {@code window}. Their next load must read the primary, a read
+ * replica may not have replayed the write yet and would put the old row back into the cache. Invalidating the whole
+ * cache puts every key into the window.
+ */
+final class PrimaryReadWindow<K> {
+
+    private final Cache<K, Boolean> invalidated;
+    private final long windowNanos;
+    private volatile long allInvalidatedUntil = System.nanoTime();
+
+    PrimaryReadWindow(Duration window, long maximumSize) {
+        this.windowNanos = window.toNanos();
+        this.invalidated = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .expireAfterWrite(window)
+                .build();
+    }
+
+    void invalidated(K key) {
+        invalidated.put(key, Boolean.TRUE);
+    }
+
+    void allInvalidated() {
+        allInvalidatedUntil = System.nanoTime() + windowNanos;
+    }
+
+    boolean contains(K key) {
+        return System.nanoTime() - allInvalidatedUntil < 0 || invalidated.getIfPresent(key) != null;
+    }
+}
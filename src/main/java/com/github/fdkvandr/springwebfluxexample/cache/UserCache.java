@@ -0,0 +1,60 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Size bounded, TTL evicting cache of user details by username, so authentication does not query the usr table on
+ * every request. Concurrent lookups of the same username share one load. Invalidated usernames are remembered for the
+ * primary read window, see {@link #isRecentlyInvalidated(String)}.
+ */
+@Component
+public class UserCache {
+
+    private final AsyncCache<String, UserDetails> cache;
+    private final PrimaryReadWindow<String> primaryReadWindow;
+
+    public UserCache(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        AnimeProperties.UserCache properties = animeProperties.getUserCache();
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .buildAsync();
+        this.primaryReadWindow = new PrimaryReadWindow<>(animeProperties.getInvalidation().getPrimaryReadWindow(),
+                properties.getMaximumSize());
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "user");
+    }
+
+    /**
+     * Returns the cached user details or loads them. Unknown usernames are not cached.
+     */
+    public Mono<UserDetails> get(String username, Function<String, Mono<UserDetails>> loader) {
+        return Mono.fromFuture(() -> cache.get(username, (key, executor) -> loader.apply(key).toFuture()).copy());
+    }
+
+    public void invalidate(String username) {
+        primaryReadWindow.invalidated(username);
+        cache.synchronous().invalidate(username);
+    }
+
+    public void invalidateAll() {
+        primaryReadWindow.allInvalidated();
+        cache.synchronous().invalidateAll();
+    }
+
+    /**
+     * Whether the user was invalidated within the primary read window, see {@link PrimaryReadWindow}.
+     */
+    public boolean isRecentlyInvalidated(String username) {
+        return primaryReadWindow.contains(username);
+    }
+}
@@ -0,0 +1,378 @@
+package com.github.fdkvandr.springwebfluxexample.configuration;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Data
+@ConfigurationProperties(prefix = "anime")
+public class AnimeProperties {
+
+    private final Page page = new Page();
+    private final Export export = new Export();
+    private final Lookup lookup = new Lookup();
+    private final Search search = new Search();
+    private final Suggest suggest = new Suggest();
+    private final Batch batch = new Batch();
+    private final Cache cache = new Cache();
+    private final BatchLoader batchLoader = new BatchLoader();
+    private final UserCache userCache = new UserCache();
+    private final CredentialCache credentialCache = new CredentialCache();
+    private final Changes changes = new Changes();
+    private final Invalidation invalidation = new Invalidation();
+    private final RateLimit rateLimit = new RateLimit();
+    private final Concurrency concurrency = new Concurrency();
+    private final Deadlines deadlines = new Deadlines();
+    private final R2dbc r2dbc = new R2dbc();
+
+    @Data
+    public static class Page {
+
+        /**
+         * Page size used when the client does not ask for one.
+         */
+        private int defaultSize = 20;
+
+        /**
+         * Upper bound for the requested page size, larger values are capped.
+         */
+        private int maxSize = 100;
+    }
+
+    @Data
+    public static class Export {
+
+        /**
+         * Rows pulled from the Postgres cursor per round-trip while streaming the catalogue.
+         */
+        private int fetchSize = 500;
+    }
+
+    @Data
+    public static class Lookup {
+
+        /**
+         * Maximum number of ids resolved by one bulk lookup request.
+         */
+        private int maxIds = 100;
+    }
+
+    @Data
+    public static class Search {
+
+        /**
+         * Shortest accepted search query, shorter prefixes match too much of the catalogue to rank quickly.
+         */
+        private int minLength = 2;
+
+        /**
+         * Longest accepted search query.
+         */
+        private int maxLength = 100;
+    }
+
+    @Data
+    public static class Suggest {
+
+        /**
+         * Whether to keep the in-memory autocomplete index, suggestions answer 503 without it.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Suggestions returned when the client does not ask for fewer.
+         */
+        private int maxResults = 10;
+
+        /**
+         * How often the index is rebuilt from the table, picking up writes of other instances.
+         */
+        private Duration rebuildInterval = Duration.ofHours(1);
+    }
+
+    @Data
+    public static class Batch {
+
+        /**
+         * Animes written per batched INSERT statement.
+         */
+        private int chunkSize = 500;
+    }
+
+    @Data
+    public static class Cache {
+
+        /**
+         * Maximum number of animes kept in the findById cache.
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * How long a cached anime is served before it is loaded again.
+         */
+        private Duration timeToLive = Duration.ofMinutes(10);
+    }
+
+    @Data
+    public static class BatchLoader {
+
+        /**
+         * Maximum number of ids resolved by one findById batch query.
+         */
+        private int maxKeys = 100;
+
+        /**
+         * How long a lookup waits for other lookups to join its batch.
+         */
+        private Duration window = Duration.ofMillis(1);
+
+        /**
+         * Batch queries running at the same time.
+         */
+        private int concurrency = 4;
+    }
+
+    @Data
+    public static class UserCache {
+
+        /**
+         * Maximum number of users kept in the user details cache.
+         */
+        private long maximumSize = 1_000;
+
+        /**
+         * How long cached user details are trusted before the usr table is queried again.
+         */
+        private Duration timeToLive = Duration.ofMinutes(5);
+    }
+
+    @Data
+    public static class CredentialCache {
+
+        /**
+         * Maximum number of remembered successful password verifications.
+         */
+        private long maximumSize = 10_000;
+
+        /**
+         * How long a successful password verification is remembered, keep it short.
+         */
+        private Duration timeToLive = Duration.ofMinutes(1);
+    }
+
+    @Data
+    public static class Changes {
+
+        /**
+         * Changes buffered for a subscriber that reads slower than they happen, the feed ends with an error once it
+         * overflows and the client resumes from the last sequence it received. Keep it above the 100 animes a single
+         * statement may change before the change log records it as one {@code RESYNC}.
+         */
+        private int bufferSize = 256;
+
+        /**
+         * Changes read from the log per query.
+         */
+        private int fetchSize = 500;
+
+        /**
+         * How long a sequence number skipped by a transaction that had not committed yet is still looked for.
+         */
+        private Duration gapTimeout = Duration.ofSeconds(30);
+
+        /**
+         * How long changes are kept in the log and can be resumed from.
+         */
+        private Duration retention = Duration.ofDays(1);
+    }
+
+    @Data
+    public static class Invalidation {
+
+        /**
+         * Whether cache invalidations are exchanged with the other instances over Postgres NOTIFY.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Invalidations gathered into one message at most.
+         */
+        private int maxKeys = 500;
+
+        /**
+         * How long invalidations are gathered before they are sent.
+         */
+        private Duration window = Duration.ofMillis(10);
+
+        /**
+         * How long invalidated keys are loaded from the primary instead of the read replica, should exceed the
+         * replication lag so a lagging replica cannot cache the old row again.
+         */
+        private Duration primaryReadWindow = Duration.ofSeconds(5);
+    }
+
+    @Data
+    public static class RateLimit {
+
+        /**
+         * Whether authenticated requests are rate limited per user and route.
+         */
+        private boolean enabled = true;
+
+        /**
+         * Maximum number of user and route buckets kept, the least recently used ones are dropped first.
+         */
+        private long maxBuckets = 100_000;
+
+        /**
+         * How long the bucket of a user that stopped sending requests is kept.
+         */
+        private Duration idleTimeout = Duration.ofMinutes(10);
+
+        /**
+         * Rate limited routes, a request counts against the first one matching its method and path that limits one of
+         * the user's roles.
+         */
+        private List<Route> routes = new ArrayList<>();
+    }
+
+    @Data
+    public static class Route {
+
+        /**
+         * Name of the route in the metrics.
+         */
+        private String name;
+
+        /**
+         * Methods of the route, any method when empty.
+         */
+        private List<String> methods = new ArrayList<>();
+
+        /**
+         * Path patterns of the route.
+         */
+        private List<String> paths = new ArrayList<>();
+
+        /**
+         * Query parameters a request of the route has, or does not have when prefixed with {@code !}, like the params
+         * of request mappings.
+         */
+        private List<String> params = new ArrayList<>();
+
+        /**
+         * Limits by role name without the {@code ROLE_} prefix, the most generous one of the user's roles applies.
+         * Requests of users without any of these roles are checked against the next matching route.
+         */
+        private Map<String, Limit> roles = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class Limit {
+
+        /**
+         * Sustained number of requests per second.
+         */
+        private double permitsPerSecond;
+
+        /**
+         * Requests that may be sent at once after being idle.
+         */
+        private int burst = 1;
+    }
+
+    @Data
+    public static class Concurrency {
+
+        /**
+         * Whether database work of the anime service is limited to an adaptive number of concurrent operations.
+         */
+        private boolean enabled = true;
+
+        private final ConcurrencyLimit read = new ConcurrencyLimit();
+        private final ConcurrencyLimit write = new ConcurrencyLimit();
+    }
+
+    @Data
+    public static class ConcurrencyLimit {
+
+        /**
+         * Concurrent operations allowed before any latency was observed.
+         */
+        private int initialLimit = 20;
+
+        /**
+         * The limit never shrinks below this.
+         */
+        private int minLimit = 1;
+
+        /**
+         * The limit never grows above this.
+         */
+        private int maxLimit = 200;
+
+        /**
+         * Operations that take longer than this to answer, or time out, shrink the limit.
+         */
+        private Duration latencyThreshold = Duration.ofMillis(250);
+
+        /**
+         * Factor applied to the limit on every slow operation, every fast one grows it by one while it is in use.
+         */
+        private double backoffRatio = 0.9;
+    }
+
+    @Data
+    public static class Deadlines {
+
+        /**
+         * Time a read may take, streams may take it for their first element and between two elements.
+         */
+        private Duration read = Duration.ofSeconds(5);
+
+        /**
+         * Time a write may take, streams may take it for their first element and between two elements.
+         */
+        private Duration write = Duration.ofSeconds(10);
+
+        /**
+         * Deadlines of single operations by name, overriding the read or write one.
+         */
+        private Map<String, Duration> operations = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class R2dbc {
+
+        /**
+         * Whether to open the initial connections of the pools at startup.
+         */
+        private boolean warmUp = true;
+
+        /**
+         * How long startup waits for the pool warm-up.
+         */
+        private Duration warmUpTimeout = Duration.ofSeconds(10);
+
+        private final Replica replica = new Replica();
+    }
+
+    @Data
+    public static class Replica {
+
+        /**
+         * R2DBC url of the read replica, read-only lookups stay on the primary while it is not set.
+         */
+        private String url;
+
+        /**
+         * How long reads go to the primary after the replica failed to hand out a connection.
+         */
+        private Duration markDownPeriod = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,66 @@
+package com.github.fdkvandr.springwebfluxexample.configuration;
+
+import com.github.fdkvandr.springwebfluxexample.r2dbc.ReadReplicaRoutingConnectionFactory;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.pool.ConnectionPoolConfiguration;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Option;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.context.properties.PropertyMapper;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+/**
+ * Replaces Spring Boot's single pool with a primary and a replica pool behind
+ * {@link ReadReplicaRoutingConnectionFactory} once {@code anime.r2dbc.replica.url} is set. Both pools use the
+ * {@code spring.r2dbc} credentials, pool settings and driver properties.
+ */
+@Configuration(proxyBeanMethods = false)
+@ConditionalOnProperty(prefix = "anime.r2dbc.replica", name = "url")
+public class ReadReplicaConfiguration {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionFactory primaryConnectionFactory(R2dbcProperties r2dbcProperties) {
+        return connectionPool("primary", r2dbcProperties.getUrl(), r2dbcProperties);
+    }
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionFactory replicaConnectionFactory(R2dbcProperties r2dbcProperties, AnimeProperties animeProperties) {
+        return connectionPool("replica", animeProperties.getR2dbc().getReplica().getUrl(), r2dbcProperties);
+    }
+
+    @Bean
+    @Primary
+    public ConnectionFactory connectionFactory(@Qualifier("primaryConnectionFactory") ConnectionFactory primary,
+                                               @Qualifier("replicaConnectionFactory") ConnectionFactory replica,
+                                               AnimeProperties animeProperties) {
+        return new ReadReplicaRoutingConnectionFactory(primary, replica,
+                animeProperties.getR2dbc().getReplica().getMarkDownPeriod());
+    }
+
+    private static ConnectionPool connectionPool(String name, String url, R2dbcProperties properties) {
+        ConnectionFactory connectionFactory = ConnectionFactoryBuilder.withUrl(url)
+                .username(properties.getUsername())
+                .password(properties.getPassword())
+                .configure(options -> properties.getProperties()
+                        .forEach((key, value) -> options.option(Option.valueOf(key), value)))
+                .build();
+        R2dbcProperties.Pool pool = properties.getPool();
+        ConnectionPoolConfiguration.Builder builder = ConnectionPoolConfiguration.builder(connectionFactory)
+                .name(name);
+        PropertyMapper map = PropertyMapper.get().alwaysApplyingWhenNonNull();
+        map.from(pool.getInitialSize()).to(builder::initialSize);
+        map.from(pool.getMaxSize()).to(builder::maxSize);
+        map.from(pool.getMaxIdleTime()).to(builder::maxIdleTime);
+        map.from(pool.getMaxLifeTime()).to(builder::maxLifeTime);
+        map.from(pool.getMaxAcquireTime()).to(builder::maxAcquireTime);
+        map.from(pool.getMaxCreateConnectionTime()).to(builder::maxCreateConnectionTime);
+        map.from(pool.getValidationQuery()).whenHasText().to(builder::validationQuery);
+        map.from(pool.getValidationDepth()).to(builder::validationDepth);
+        return new ConnectionPool(builder.build());
+    }
+}
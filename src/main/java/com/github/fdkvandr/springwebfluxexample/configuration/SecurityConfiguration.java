@@ -1,6 +1,10 @@
 package com.github.fdkvandr.springwebfluxexample.configuration;
 
+import com.github.fdkvandr.springwebfluxexample.security.CachingPasswordEncoder;
+import com.github.fdkvandr.springwebfluxexample.security.HasAuthorityAuthorizationManager;
+import com.github.fdkvandr.springwebfluxexample.security.RateLimitWebFilter;
 import com.github.fdkvandr.springwebfluxexample.service.UserService;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.http.HttpMethod;
@@ -9,24 +13,39 @@ import org.springframework.security.authentication.UserDetailsRepositoryReactive
 import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.method.configuration.EnableReactiveMethodSecurity;
 import org.springframework.security.config.annotation.web.reactive.EnableWebFluxSecurity;
+import org.springframework.security.config.web.server.SecurityWebFiltersOrder;
 import org.springframework.security.config.web.server.ServerHttpSecurity;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.security.web.server.SecurityWebFilterChain;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
 
 @Configuration
 @EnableWebFluxSecurity
 @EnableReactiveMethodSecurity
 public class SecurityConfiguration {
 
+    private static final HasAuthorityAuthorizationManager ADMIN = HasAuthorityAuthorizationManager.hasRole("ADMIN");
+    private static final HasAuthorityAuthorizationManager USER = HasAuthorityAuthorizationManager.hasRole("USER");
+
     @Bean
-        public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http) {
+        public SecurityWebFilterChain securityWebFilterChain(ServerHttpSecurity http,
+                                                             AnimeProperties animeProperties,
+                                                             MeterRegistry meterRegistry) {
+            if (animeProperties.getRateLimit().isEnabled())
+                // not a bean, WebFlux would run every WebFilter bean a second time ahead of the security chain
+                http.addFilterAfter(new RateLimitWebFilter(animeProperties.getRateLimit(), meterRegistry),
+                        SecurityWebFiltersOrder.AUTHENTICATION);
             return http
                     .csrf(ServerHttpSecurity.CsrfSpec::disable)
                     .authorizeExchange(authorizeExchangeSpec -> authorizeExchangeSpec
-                            .pathMatchers(HttpMethod.POST, "/animes/**").hasRole("ADMIN")
-                            .pathMatchers(HttpMethod.PUT, "/animes/**").hasRole("ADMIN")
-                            .pathMatchers(HttpMethod.DELETE, "/animes/**").hasRole("ADMIN")
-                            .pathMatchers(HttpMethod.GET, "/animes/**").hasRole("USER")
+                            .pathMatchers(HttpMethod.POST, "/animes/**").access(ADMIN)
+                            .pathMatchers(HttpMethod.PUT, "/animes/**").access(ADMIN)
+                            .pathMatchers(HttpMethod.DELETE, "/animes/**").access(ADMIN)
+                            .pathMatchers(HttpMethod.GET, "/animes/**").access(USER)
                             .pathMatchers(HttpMethod.GET, "/swagger-ui.html", "/swagger-ui/**", "/v3/api-docs/**", "/webjars/**").permitAll()
+                            .pathMatchers(HttpMethod.GET, "/actuator/health/**", "/actuator/prometheus").permitAll()
                             .anyExchange().authenticated())
                     .formLogin(Customizer.withDefaults())
                     .httpBasic(Customizer.withDefaults())
@@ -34,7 +53,29 @@ public class SecurityConfiguration {
     }
 
     @Bean
-    public ReactiveAuthenticationManager authenticationManager(UserService userService) {
-        return new UserDetailsRepositoryReactiveAuthenticationManager(userService);
+    public ReactiveAuthenticationManager authenticationManager(UserService userService,
+                                                               PasswordEncoder passwordEncoder,
+                                                               Scheduler passwordEncoderScheduler) {
+        UserDetailsRepositoryReactiveAuthenticationManager authenticationManager =
+                new UserDetailsRepositoryReactiveAuthenticationManager(userService);
+        authenticationManager.setPasswordEncoder(passwordEncoder);
+        authenticationManager.setScheduler(passwordEncoderScheduler);
+        return authenticationManager;
+    }
+
+    @Bean
+    public PasswordEncoder passwordEncoder(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        return new CachingPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder(),
+                animeProperties.getCredentialCache(), meterRegistry);
+    }
+
+    /**
+     * Password checks are CPU bound, so they get one thread per core instead of the shared boundedElastic pool and
+     * never run on the Netty event loop.
+     */
+    @Bean(destroyMethod = "dispose")
+    public Scheduler passwordEncoderScheduler() {
+        return Schedulers.newBoundedElastic(Runtime.getRuntime().availableProcessors(),
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE, "password-encoder");
     }
 }
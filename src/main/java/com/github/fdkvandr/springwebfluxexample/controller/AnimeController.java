@@ -1,18 +1,31 @@
 package com.github.fdkvandr.springwebfluxexample.controller;
 
 import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeChange;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeLookup;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimePage;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportMode;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportResult;
+import com.github.fdkvandr.springwebfluxexample.domain.IngestProgress;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeChangeFeed;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeImportService;
 import com.github.fdkvandr.springwebfluxexample.service.AnimeService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
 import java.util.List;
 
 @Slf4j
@@ -21,21 +34,84 @@ import java.util.List;
 @RequiredArgsConstructor
 public class AnimeController {
 
+    private static final Duration KEEP_ALIVE_INTERVAL = Duration.ofSeconds(15);
+
     private final AnimeService animeService;
+    private final AnimeImportService animeImportService;
+    private final AnimeChangeFeed animeChangeFeed;
+
+    @GetMapping(produces = {MediaType.APPLICATION_JSON_VALUE, MediaType.APPLICATION_NDJSON_VALUE, MediaType.TEXT_EVENT_STREAM_VALUE})
+    @PreAuthorize("hasRole('ADMIN')")
+    @Operation(summary = "findAll animes, streamed row by row for application/x-ndjson and text/event-stream, 304 when If-None-Match holds the current ETag", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ResponseEntity<Flux<Anime>>> findAll() {
+        // the catalogue is only streamed when the ETag does not match, the 304 is written by the result handler
+        return animeService.findCollectionStamp()
+                .map(stamp -> ResponseEntity.ok()
+                        .eTag(EntityTags.ofCollection(stamp))
+                        .body(animeService.findAll()));
+    }
+
+    @GetMapping(params = "ids")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "findAllById animes in request order with not found markers", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<AnimeLookup> findAllById(@RequestParam("ids") List<Integer> ids) {
+        return animeService.findAllById(ids);
+    }
 
-    @GetMapping
+    @GetMapping("/page")
     @ResponseStatus(HttpStatus.OK)
     @PreAuthorize("hasRole('ADMIN')")
-    @Operation(summary = "findAll animes", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
-    public Flux<Anime> findAll() {
-        return animeService.findAll();
+    @Operation(summary = "findPage animes", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<AnimePage> findPage(@RequestParam(value = "cursor", required = false) String cursor,
+                                    @RequestParam(value = "size", required = false) Integer size) {
+        return animeService.findPage(cursor, size);
     }
 
-    @GetMapping("/{id}")
+    @GetMapping("/search")
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "search animes by name prefix and similarity, ranked and paged", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<AnimePage> search(@RequestParam("q") String query,
+                                  @RequestParam(value = "cursor", required = false) String cursor,
+                                  @RequestParam(value = "size", required = false) Integer size) {
+        return animeService.search(query, cursor, size);
+    }
+
+    @GetMapping("/suggest")
     @ResponseStatus(HttpStatus.OK)
-    @Operation(summary = "findById anime", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
-    public Mono<Anime> findById(@PathVariable("id") int id) {
-        return animeService.findById(id);
+    @Operation(summary = "suggest animes by name prefix from the in-memory index", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<Anime> suggest(@RequestParam("prefix") String prefix,
+                               @RequestParam(value = "size", required = false) Integer size) {
+        return animeService.suggest(prefix, size);
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    @Operation(summary = "follow inserts, updates and deletes of animes, resumed after since or Last-Event-ID; reload the animes on a RESYNC entry", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<ServerSentEvent<AnimeChange>> changeEvents(@RequestParam(value = "since", required = false) Long since,
+                                                           @RequestHeader(value = "Last-Event-ID", required = false) Long lastEventId) {
+        // the sequence is the event id, so a reconnecting EventSource resumes where it stopped
+        return animeChangeFeed.changes(since != null ? since : lastEventId)
+                .map(change -> ServerSentEvent.builder(change).id(String.valueOf(change.getSeq())).build())
+                .mergeWith(Flux.interval(KEEP_ALIVE_INTERVAL)
+                        .map(tick -> ServerSentEvent.<AnimeChange>builder().comment("keep-alive").build()));
+    }
+
+    @GetMapping(value = "/changes", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @Operation(summary = "follow inserts, updates and deletes of animes as ndjson, resumed after since; reload the animes on a RESYNC entry", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<AnimeChange> changes(@RequestParam(value = "since", required = false) Long since) {
+        return animeChangeFeed.changes(since);
+    }
+
+    @GetMapping("/{id}")
+    @Operation(summary = "findById anime, 304 when If-None-Match holds the current ETag", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ResponseEntity<Anime>> findById(@PathVariable("id") int id,
+                                                @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
+        if (ifNoneMatch == null)
+            return animeService.findById(id).map(AnimeController::withETag);
+        // decided on the version alone, the anime is only loaded and serialized when it changed
+        return animeService.findVersion(id)
+                .flatMap(version -> EntityTags.noneMatch(ifNoneMatch, version)
+                        ? animeService.findById(id).map(AnimeController::withETag)
+                        : Mono.just(ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(EntityTags.of(version)).build()));
     }
 
     @PostMapping
@@ -52,17 +128,42 @@ public class AnimeController {
         return animeService.batchSave(animes);
     }
 
+    @PostMapping(value = "/ingest",
+            consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "ingest a stream of animes in chunks and report progress", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Flux<IngestProgress> ingest(@RequestBody Flux<Anime> animes) {
+        return animeImportService.ingest(animes);
+    }
+
+    @PostMapping(value = "/import", consumes = {MediaType.APPLICATION_NDJSON_VALUE, MediaType.APPLICATION_JSON_VALUE})
+    @ResponseStatus(HttpStatus.OK)
+    @Operation(summary = "bulk import animes with Postgres COPY", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ImportResult> importAll(@RequestParam(value = "mode", defaultValue = "APPEND") ImportMode mode,
+                                        @RequestBody Flux<Anime> animes) {
+        return animeImportService.importAll(animes, mode);
+    }
+
     @PutMapping("/{id}")
-    @ResponseStatus(HttpStatus.NO_CONTENT)
-    @Operation(summary = "update anime", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
-    public Mono<Void> update(@PathVariable("id") int id, @Valid @RequestBody Anime anime) {
-        return animeService.update(anime.withId(id));
+    @Operation(summary = "update anime, conditional on If-Match, returns the new ETag", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<ResponseEntity<Void>> update(@PathVariable("id") int id, @Valid @RequestBody Anime anime,
+                                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> animeService.update(anime.withId(id), EntityTags.expectedVersion(ifMatch)))
+                .map(updated -> ResponseEntity.noContent().eTag(EntityTags.of(updated.getVersion())).build());
     }
 
     @DeleteMapping("/{id}")
     @ResponseStatus(HttpStatus.NO_CONTENT)
-    @Operation(summary = "delete anime", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
-    public Mono<Void> delete(@PathVariable("id") int id) {
-        return animeService.delete(id);
+    @Operation(summary = "delete anime, conditional on If-Match", tags = {"anime"}, security = @SecurityRequirement(name = "Basic Authentication"))
+    public Mono<Void> delete(@PathVariable("id") int id,
+                             @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch) {
+        return Mono.defer(() -> animeService.delete(id, EntityTags.expectedVersion(ifMatch)));
+    }
+
+    private static ResponseEntity<Anime> withETag(Anime anime) {
+        return ResponseEntity.ok()
+                .eTag(EntityTags.of(anime.getVersion()))
+                .body(anime);
     }
 }
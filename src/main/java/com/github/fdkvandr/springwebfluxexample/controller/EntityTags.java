@@ -0,0 +1,57 @@
+package com.github.fdkvandr.springwebfluxexample.controller;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Strong entity tags of animes, the quoted version column.
+ */
+final class EntityTags {
+
+    private EntityTags() {
+    }
+
+    static String of(long version) {
+        return "\"" + version + "\"";
+    }
+
+    /**
+     * Weak tag of the catalogue, its JSON, NDJSON and event stream representations are not byte-identical.
+     */
+    static String ofCollection(String stamp) {
+        return "W/\"" + stamp + "\"";
+    }
+
+    /**
+     * Weak comparison of an {@code If-None-Match} header against the version, as required for GET.
+     */
+    static boolean noneMatch(String ifNoneMatch, long version) {
+        String tag = of(version);
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/"))
+                candidate = candidate.substring(2);
+            if (candidate.equals("*") || candidate.equals(tag))
+                return false;
+        }
+        return true;
+    }
+
+    /**
+     * Version an {@code If-Match} header asks for, {@code null} when the header is absent or {@code *}. Weak, malformed
+     * and multiple tags can not be matched against the version and fail with 412.
+     */
+    static Long expectedVersion(String ifMatch) {
+        if (ifMatch == null || ifMatch.isBlank() || ifMatch.trim().equals("*"))
+            return null;
+        String tag = ifMatch.trim();
+        if (tag.length() > 2 && tag.charAt(0) == '"' && tag.charAt(tag.length() - 1) == '"') {
+            try {
+                return Long.parseLong(tag, 1, tag.length() - 1, 10);
+            } catch (NumberFormatException ignored) {
+                // falls through to 412
+            }
+        }
+        throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Anime was modified");
+    }
+}
@@ -4,6 +4,7 @@ import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.NotNull;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
 import org.springframework.data.relational.core.mapping.Table;
 
 @Data
@@ -19,4 +20,9 @@ public class Anime {
     @NotNull
     @NotEmpty(message = "The name of this anime can not be empty")
     private String name;
+    /**
+     * Incremented by every update, exposed as the strong ETag of the anime.
+     */
+    @Version
+    private Long version;
 }
@@ -0,0 +1,48 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.relational.core.mapping.Table;
+
+import java.time.OffsetDateTime;
+
+/**
+ * One insert, update or delete of an anime, written to the change log by a trigger on the anime table. Bulk loads and
+ * statements that change many animes at once are logged as a single {@link Operation#RESYNC} entry instead.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+@Table("anime_change")
+public class AnimeChange {
+
+    /**
+     * Position in the change log, pass the last one received as {@code since} to resume the feed after it.
+     */
+    @Id
+    private Long seq;
+    /**
+     * The changed anime, {@code null} for a {@link Operation#RESYNC}.
+     */
+    private Integer animeId;
+    private Operation operation;
+    /**
+     * The name after the change, or before it for a delete.
+     */
+    private String name;
+    private Long version;
+    private OffsetDateTime changedAt;
+
+    public enum Operation {
+        INSERT, UPDATE, DELETE,
+        /**
+         * Any number of animes changed without being logged one by one. Clients that mirror the catalogue reload it,
+         * for example from {@code GET /animes}, and keep following the feed after this entry.
+         */
+        RESYNC
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimeLookup {
+
+    private Integer id;
+    private boolean found;
+    /**
+     * The anime with the requested id, {@code null} when {@link #found} is {@code false}.
+     */
+    private Anime anime;
+}
@@ -0,0 +1,21 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class AnimePage {
+
+    private List<Anime> content;
+    /**
+     * Opaque continuation token for the next page, {@code null} on the last page.
+     */
+    private String next;
+}
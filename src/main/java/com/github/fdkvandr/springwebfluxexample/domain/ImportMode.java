@@ -0,0 +1,13 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+public enum ImportMode {
+
+    /**
+     * COPY straight into the anime table.
+     */
+    APPEND,
+    /**
+     * COPY into a transaction scoped staging table and only insert names that are not in the catalogue yet.
+     */
+    MERGE
+}
@@ -0,0 +1,19 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class ImportResult {
+
+    private ImportMode mode;
+    private long rows;
+    private long rejected;
+    private long elapsedMillis;
+    private double rowsPerSecond;
+}
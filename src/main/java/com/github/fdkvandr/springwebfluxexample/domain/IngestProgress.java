@@ -0,0 +1,17 @@
+package com.github.fdkvandr.springwebfluxexample.domain;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Builder
+public class IngestProgress {
+
+    private long accepted;
+    private long rejected;
+    private boolean completed;
+}
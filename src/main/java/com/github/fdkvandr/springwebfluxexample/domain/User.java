@@ -1,18 +1,18 @@
 package com.github.fdkvandr.springwebfluxexample.domain;
 
+import com.github.fdkvandr.springwebfluxexample.security.Authorities;
 import lombok.*;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.PersistenceCreator;
+import org.springframework.data.annotation.Transient;
 import org.springframework.data.relational.core.mapping.Table;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.userdetails.UserDetails;
 
-import java.util.Arrays;
 import java.util.Collection;
-import java.util.stream.Collectors;
+import java.util.Set;
 
 @Data
-@AllArgsConstructor
 @NoArgsConstructor
 @Table("usr")
 public class User implements UserDetails {
@@ -27,11 +27,34 @@ public class User implements UserDetails {
     private String password;
 
     private String authorities;
+
+    /**
+     * Parsed once from {@link #authorities} when the row is mapped, shared with all users that have the same roles.
+     */
+    @Transient
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private Set<GrantedAuthority> grantedAuthorities = Set.of();
+
+    @PersistenceCreator
+    public User(Integer id, String name, String username, String password, String authorities) {
+        this.id = id;
+        this.name = name;
+        this.username = username;
+        this.password = password;
+        setAuthorities(authorities);
+    }
+
+    public void setAuthorities(String authorities) {
+        this.authorities = authorities;
+        this.grantedAuthorities = Authorities.parse(authorities);
+    }
+
     @Override
     public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Arrays.stream(authorities.split(","))
-                .map(SimpleGrantedAuthority::new)
-                .collect(Collectors.toList());
+        return grantedAuthorities;
     }
 
     @Override
@@ -1,5 +1,7 @@
 package com.github.fdkvandr.springwebfluxexample.exception;
 
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import org.springframework.boot.autoconfigure.web.WebProperties;
 import org.springframework.boot.autoconfigure.web.reactive.error.AbstractErrorWebExceptionHandler;
 import org.springframework.boot.web.error.ErrorAttributeOptions;
@@ -10,6 +12,7 @@ import org.springframework.http.codec.ServerCodecConfigurer;
 import org.springframework.stereotype.Component;
 import org.springframework.web.reactive.function.BodyInserters;
 import org.springframework.web.reactive.function.server.*;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.core.publisher.Mono;
 
 import java.util.Map;
@@ -22,13 +25,17 @@ import static org.springframework.http.MediaType.APPLICATION_JSON;
 @Component
 public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
 
+    private final MeterRegistry meterRegistry;
+
     public GlobalExceptionHandler(
             ErrorAttributes errorAttributes,
             WebProperties webProperties,
             ApplicationContext applicationContext,
-            ServerCodecConfigurer codecConfigurer) {
+            ServerCodecConfigurer codecConfigurer,
+            MeterRegistry meterRegistry) {
         super(errorAttributes, webProperties.getResources(), applicationContext);
         this.setMessageWriters(codecConfigurer.getWriters());
+        this.meterRegistry = meterRegistry;
     }
 
     @Override
@@ -44,6 +51,12 @@ public class GlobalExceptionHandler extends AbstractErrorWebExceptionHandler {
 
         Map<String, Object> errorAttributes = getErrorAttributes(serverRequest, errorAttributeOptions);
         int status = (int) Optional.ofNullable(errorAttributes.get("status")).orElse(500);
+        if (getError(serverRequest) instanceof ResponseStatusException)
+            Counter.builder("anime.errors")
+                    .description("ResponseStatusExceptions rendered by the global exception handler")
+                    .tag("status", String.valueOf(status))
+                    .register(meterRegistry)
+                    .increment();
         return ServerResponse.status(status)
                 .contentType(APPLICATION_JSON)
                 .body(BodyInserters.fromValue(errorAttributes));
@@ -0,0 +1,35 @@
+package com.github.fdkvandr.springwebfluxexample.metrics;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.stereotype.Component;
+import reactor.blockhound.BlockingMethod;
+import reactor.blockhound.BlockingOperationError;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Counts blocking calls detected by BlockHound. BlockHound is installed before the application context exists, so the
+ * count lives in a static adder and is bound to the registry once it is available.
+ */
+@Component
+public class BlockHoundMetrics implements MeterBinder {
+
+    private static final LongAdder VIOLATIONS = new LongAdder();
+
+    /**
+     * BlockHound blocking method callback, counts the violation and fails the call like the default callback does.
+     */
+    public static void onBlockingCall(BlockingMethod method) {
+        VIOLATIONS.increment();
+        throw new BlockingOperationError(method);
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("blockhound.violations", VIOLATIONS, LongAdder::doubleValue)
+                .description("Blocking calls detected on non-blocking threads")
+                .register(registry);
+    }
+}
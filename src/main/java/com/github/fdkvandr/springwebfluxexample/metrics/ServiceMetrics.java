@@ -0,0 +1,65 @@
+package com.github.fdkvandr.springwebfluxexample.metrics;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Times service operations from subscription to termination as {@code anime.service} timers tagged with the operation
+ * and its outcome (success, error or cancel), with p50/p99 and a percentile histogram for Prometheus.
+ */
+@Component
+public class ServiceMetrics {
+
+    private static final String TIMER_NAME = "anime.service";
+
+    private final MeterRegistry meterRegistry;
+    private final ConcurrentMap<String, OperationTimers> timers = new ConcurrentHashMap<>();
+
+    public ServiceMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> Mono<T> timed(String operation, Mono<T> mono) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return mono.doFinally(signal -> sample.stop(timer(operation, signal)));
+        });
+    }
+
+    public <T> Flux<T> timed(String operation, Flux<T> flux) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return flux.doFinally(signal -> sample.stop(timer(operation, signal)));
+        });
+    }
+
+    private Timer timer(String operation, SignalType signal) {
+        OperationTimers operationTimers = timers.computeIfAbsent(operation, it -> new OperationTimers(
+                register(it, "success"), register(it, "error"), register(it, "cancel")));
+        return switch (signal) {
+            case ON_ERROR -> operationTimers.error();
+            case CANCEL -> operationTimers.cancel();
+            default -> operationTimers.success();
+        };
+    }
+
+    private Timer register(String operation, String outcome) {
+        return Timer.builder(TIMER_NAME)
+                .description("Latency of service operations")
+                .tag("operation", operation)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+
+    private record OperationTimers(Timer success, Timer error, Timer cancel) {
+    }
+}
@@ -0,0 +1,65 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Marks an operation whose cancellation, by a deadline or by the client going away, has to stop its statements on the
+ * server too. Statements executed by {@link CancellingConnectionFactory} connections within
+ * {@link #propagate(Mono)} register here while they run, and are sent a Postgres cancel request when the operation is
+ * cancelled before they completed. Operators like {@code next()} that cancel a statement's rows after the operation
+ * got what it needed do not cancel the operation and send nothing.
+ */
+public final class CancellationScope {
+
+    private final Set<CancellingConnectionFactory.CancellingConnection> running = ConcurrentHashMap.newKeySet();
+    private volatile boolean cancelled;
+
+    private CancellationScope() {
+    }
+
+    public static <T> Mono<T> propagate(Mono<T> mono) {
+        return Mono.defer(() -> {
+            CancellationScope scope = new CancellationScope();
+            return mono.doOnCancel(scope::cancel)
+                    .contextWrite(Context.of(CancellationScope.class, scope));
+        });
+    }
+
+    public static <T> Flux<T> propagate(Flux<T> flux) {
+        return Flux.defer(() -> {
+            CancellationScope scope = new CancellationScope();
+            return flux.doOnCancel(scope::cancel)
+                    .contextWrite(Context.of(CancellationScope.class, scope));
+        });
+    }
+
+    static CancellationScope current(ContextView context) {
+        return context.getOrDefault(CancellationScope.class, null);
+    }
+
+    /**
+     * Registers a connection that started a statement, it is cancelled right away when the scope already is.
+     */
+    void started(CancellingConnectionFactory.CancellingConnection connection) {
+        running.add(connection);
+        if (cancelled && running.remove(connection))
+            connection.cancel();
+    }
+
+    void finished(CancellingConnectionFactory.CancellingConnection connection) {
+        running.remove(connection);
+    }
+
+    private void cancel() {
+        cancelled = true;
+        for (CancellingConnectionFactory.CancellingConnection connection : running)
+            if (running.remove(connection))
+                connection.cancel();
+    }
+}
@@ -0,0 +1,278 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Batch;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.ConnectionMetadata;
+import io.r2dbc.spi.IsolationLevel;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import io.r2dbc.spi.TransactionDefinition;
+import io.r2dbc.spi.ValidationDepth;
+import io.r2dbc.spi.Wrapped;
+import lombok.extern.slf4j.Slf4j;
+import org.reactivestreams.Publisher;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends a Postgres cancel request for statements of a cancelled {@link CancellationScope}. Without it the driver only
+ * stops reading: the server runs the statement to the end and the connection stays busy draining the rows. The server
+ * acts on a cancel request asynchronously, whichever statement the backend runs when the signal arrives is the one
+ * that fails. A connection that was sent one therefore runs a {@code SELECT 1} round-trip before it goes back to the
+ * pool, so the cancel can only hit the cancelled statement or that round-trip, never the next borrower's statement.
+ * Sent cancel requests are counted as {@code r2dbc.cancel.requests}.
+ */
+@Slf4j
+public class CancellingConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory delegate;
+    private final Counter cancelRequests;
+
+    public CancellingConnectionFactory(ConnectionFactory delegate, MeterRegistry meterRegistry, String name) {
+        this.delegate = delegate;
+        this.cancelRequests = Counter.builder("r2dbc.cancel.requests")
+                .description("Cancel requests sent for statements of cancelled operations")
+                .tag("name", name)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.<Connection>from(delegate.create())
+                .map(CancellingConnection::new);
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+
+    @Override
+    public void dispose() {
+        if (delegate instanceof Disposable disposable)
+            disposable.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return delegate instanceof Disposable disposable && disposable.isDisposed();
+    }
+
+    final class CancellingConnection implements Connection, Wrapped<Connection> {
+
+        private final Connection delegate;
+        private final AtomicReference<Mono<Void>> cancelRequest = new AtomicReference<>();
+
+        private CancellingConnection(Connection delegate) {
+            this.delegate = delegate;
+        }
+
+        /**
+         * Asks the server to abort the statement this connection is running.
+         */
+        void cancel() {
+            PostgresqlConnection connection = R2dbcWrappers.unwrap(delegate, PostgresqlConnection.class);
+            if (connection == null)
+                return;
+            Mono<Void> request = connection.cancelRequest()
+                    .doOnSubscribe(subscription -> cancelRequests.increment())
+                    .onErrorResume(e -> {
+                        log.warn("Could not cancel the statement running on {}", connection, e);
+                        return Mono.empty();
+                    })
+                    .cache();
+            if (cancelRequest.compareAndSet(null, request))
+                request.subscribe();
+        }
+
+        @Override
+        public Statement createStatement(String sql) {
+            return new CancellingStatement(delegate.createStatement(sql), this);
+        }
+
+        @Override
+        public Publisher<Void> close() {
+            return Mono.defer(() -> {
+                Mono<Void> request = cancelRequest.getAndSet(null);
+                return request == null
+                        ? Mono.from(delegate.close())
+                        : request.then(settle()).then(Mono.from(delegate.close()));
+            });
+        }
+
+        /**
+         * Completes once the backend is done with the cancelled statement and with the cancel request. The round-trip
+         * is queued behind the cancelled statement, so it only runs after its rows were drained up to the
+         * {@code 57014} error or its end, and it fails itself if the cancel signal reached the backend only then.
+         */
+        private Mono<Void> settle() {
+            return Flux.from(delegate.createStatement("SELECT 1").execute())
+                    .flatMap(Result::getRowsUpdated)
+                    .then()
+                    .onErrorResume(e -> {
+                        log.debug("Cancel request settled on {}", delegate, e);
+                        return Mono.empty();
+                    });
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction() {
+            return delegate.beginTransaction();
+        }
+
+        @Override
+        public Publisher<Void> beginTransaction(TransactionDefinition definition) {
+            return delegate.beginTransaction(definition);
+        }
+
+        @Override
+        public Publisher<Void> commitTransaction() {
+            return delegate.commitTransaction();
+        }
+
+        @Override
+        public Batch createBatch() {
+            return delegate.createBatch();
+        }
+
+        @Override
+        public Publisher<Void> createSavepoint(String name) {
+            return delegate.createSavepoint(name);
+        }
+
+        @Override
+        public boolean isAutoCommit() {
+            return delegate.isAutoCommit();
+        }
+
+        @Override
+        public ConnectionMetadata getMetadata() {
+            return delegate.getMetadata();
+        }
+
+        @Override
+        public IsolationLevel getTransactionIsolationLevel() {
+            return delegate.getTransactionIsolationLevel();
+        }
+
+        @Override
+        public Publisher<Void> releaseSavepoint(String name) {
+            return delegate.releaseSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransaction() {
+            return delegate.rollbackTransaction();
+        }
+
+        @Override
+        public Publisher<Void> rollbackTransactionToSavepoint(String name) {
+            return delegate.rollbackTransactionToSavepoint(name);
+        }
+
+        @Override
+        public Publisher<Void> setAutoCommit(boolean autoCommit) {
+            return delegate.setAutoCommit(autoCommit);
+        }
+
+        @Override
+        public Publisher<Void> setLockWaitTimeout(Duration timeout) {
+            return delegate.setLockWaitTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setStatementTimeout(Duration timeout) {
+            return delegate.setStatementTimeout(timeout);
+        }
+
+        @Override
+        public Publisher<Void> setTransactionIsolationLevel(IsolationLevel isolationLevel) {
+            return delegate.setTransactionIsolationLevel(isolationLevel);
+        }
+
+        @Override
+        public Publisher<Boolean> validate(ValidationDepth depth) {
+            return delegate.validate(depth);
+        }
+
+        @Override
+        public Connection unwrap() {
+            return delegate;
+        }
+    }
+
+    /**
+     * Registers the running statement with the {@link CancellationScope} of the subscriber until its results were
+     * read, failed or were cancelled.
+     */
+    private record CancellingStatement(Statement delegate, CancellingConnection connection) implements Statement {
+
+        @Override
+        public Publisher<? extends Result> execute() {
+            return Flux.deferContextual(context -> {
+                CancellationScope scope = CancellationScope.current(context);
+                Flux<Result> results = Flux.from(delegate.execute());
+                if (scope == null)
+                    return results;
+                scope.started(connection);
+                return results.doFinally(signal -> scope.finished(connection));
+            });
+        }
+
+        @Override
+        public Statement add() {
+            delegate.add();
+            return this;
+        }
+
+        @Override
+        public Statement bind(int index, Object value) {
+            delegate.bind(index, value);
+            return this;
+        }
+
+        @Override
+        public Statement bind(String name, Object value) {
+            delegate.bind(name, value);
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(int index, Class<?> type) {
+            delegate.bindNull(index, type);
+            return this;
+        }
+
+        @Override
+        public Statement bindNull(String name, Class<?> type) {
+            delegate.bindNull(name, type);
+            return this;
+        }
+
+        @Override
+        public Statement fetchSize(int rows) {
+            delegate.fetchSize(rows);
+            return this;
+        }
+
+        @Override
+        public Statement returnGeneratedValues(String... columns) {
+            delegate.returnGeneratedValues(columns);
+            return this;
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+/**
+ * Decorates every connection pool bean, innermost first, with {@link CancellingConnectionFactory}, so the statements
+ * of cancelled operations are cancelled on the server, and with {@link MeteredConnectionFactory}, which times the
+ * acquisition of connections from the pool.
+ */
+@Component
+public class ConnectionPoolDecoratingPostProcessor implements BeanPostProcessor {
+
+    private final ObjectProvider<MeterRegistry> meterRegistry;
+
+    public ConnectionPoolDecoratingPostProcessor(ObjectProvider<MeterRegistry> meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (!(bean instanceof ConnectionPool connectionPool))
+            return bean;
+        MeterRegistry registry = meterRegistry.getObject();
+        return new MeteredConnectionFactory(new CancellingConnectionFactory(connectionPool, registry, beanName),
+                registry, beanName);
+    }
+}
@@ -0,0 +1,45 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Opens the initial connections of every pool before the application reports itself ready, so the first requests
+ * after a deploy do not pay for connection setup. A database that is not reachable yet, or
+ * slower than the warm-up timeout, only produces a warning.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class ConnectionPoolWarmUp implements ApplicationRunner {
+
+    private final ObjectProvider<ConnectionFactory> connectionFactories;
+    private final AnimeProperties animeProperties;
+
+    @Override
+    public void run(ApplicationArguments args) {
+        AnimeProperties.R2dbc properties = animeProperties.getR2dbc();
+        if (!properties.isWarmUp())
+            return;
+        Flux.fromStream(connectionFactories.orderedStream())
+                .mapNotNull(connectionFactory -> R2dbcWrappers.unwrap(connectionFactory, ConnectionPool.class))
+                .distinct()
+                .flatMap(connectionPool -> connectionPool.warmup()
+                        .timeout(properties.getWarmUpTimeout())
+                        .doOnNext(connections -> log.info("Warmed up {} connections of {}", connections, connectionPool))
+                        .onErrorResume(e -> {
+                            log.warn("Could not warm up {}", connectionPool, e);
+                            return Mono.empty();
+                        }))
+                .blockLast();
+    }
+}
@@ -0,0 +1,76 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import io.r2dbc.spi.Wrapped;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+
+/**
+ * Records how long callers wait for a connection as the {@code r2dbc.pool.acquire} timer, tagged with the outcome
+ * (success, error or cancel) so failed and timed out acquires of a saturated pool show up too. The pool gauges (acquired,
+ * idle, pending, ...) are bound by Spring Boot, which unwraps this decorator to find the pool.
+ */
+public class MeteredConnectionFactory implements ConnectionFactory, Wrapped<ConnectionFactory>, Disposable {
+
+    private final ConnectionFactory delegate;
+    private final MeterRegistry meterRegistry;
+    private final Timer success;
+    private final Timer error;
+    private final Timer cancel;
+
+    public MeteredConnectionFactory(ConnectionFactory delegate, MeterRegistry meterRegistry, String name) {
+        this.delegate = delegate;
+        this.meterRegistry = meterRegistry;
+        this.success = register(meterRegistry, name, "success");
+        this.error = register(meterRegistry, name, "error");
+        this.cancel = register(meterRegistry, name, "cancel");
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return Mono.<Connection>from(delegate.create())
+                    .doFinally(signal -> sample.stop(switch (signal) {
+                        case ON_ERROR -> error;
+                        case CANCEL -> cancel;
+                        default -> success;
+                    }));
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return delegate.getMetadata();
+    }
+
+    @Override
+    public ConnectionFactory unwrap() {
+        return delegate;
+    }
+
+    @Override
+    public void dispose() {
+        if (delegate instanceof Disposable disposable)
+            disposable.dispose();
+    }
+
+    @Override
+    public boolean isDisposed() {
+        return delegate instanceof Disposable disposable && disposable.isDisposed();
+    }
+
+    private static Timer register(MeterRegistry meterRegistry, String name, String outcome) {
+        return Timer.builder("r2dbc.pool.acquire")
+                .description("Time spent waiting for a pooled connection")
+                .tag("name", name)
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.postgresql.api.PostgresqlResult;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.Option;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.r2dbc.R2dbcProperties;
+import org.springframework.boot.r2dbc.ConnectionFactoryBuilder;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Holds one dedicated connection to the primary, outside the pool, that {@code LISTEN}s on every channel asked for
+ * through {@link #listen(String)} and fans the notifications out to all subscribers. The connection is opened with the
+ * first subscriber, closed after the last one left and reopened with backoff when it breaks. Notifications sent while
+ * it was down are lost, which is why every (re)connect is announced with a {@link ChannelNotification#isReconnect()}
+ * signal on each channel.
+ */
+@Slf4j
+@Component
+public class PostgresNotificationListener {
+
+    private static final Duration MIN_BACKOFF = Duration.ofSeconds(1);
+    private static final Duration MAX_BACKOFF = Duration.ofSeconds(30);
+
+    private final Set<String> channels = ConcurrentHashMap.newKeySet();
+    private final AtomicReference<PostgresqlConnection> current = new AtomicReference<>();
+    private final Flux<ChannelNotification> notifications;
+
+    @Autowired
+    public PostgresNotificationListener(R2dbcProperties r2dbcProperties) {
+        this(ConnectionFactoryBuilder.withUrl(r2dbcProperties.getUrl())
+                .username(r2dbcProperties.getUsername())
+                .password(r2dbcProperties.getPassword())
+                .configure(options -> r2dbcProperties.getProperties()
+                        .forEach((key, value) -> options.option(Option.valueOf(key), value)))
+                .build());
+    }
+
+    PostgresNotificationListener(ConnectionFactory connectionFactory) {
+        this.notifications = Flux.usingWhen(connectionFactory.create(), this::listen, Connection::close)
+                .concatWith(Mono.error(() -> new IllegalStateException("Listener connection closed")))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, MIN_BACKOFF)
+                        .maxBackoff(MAX_BACKOFF)
+                        .transientErrors(true)
+                        .doBeforeRetry(signal -> log.warn("Lost the notification listener connection, reconnecting",
+                                signal.failure())))
+                .share();
+    }
+
+    /**
+     * Notifications of one channel. Subscribing the first time registers the channel on the shared connection.
+     */
+    public Flux<ChannelNotification> listen(String channel) {
+        return Flux.defer(() -> {
+            Mono<Void> registered = Mono.empty();
+            if (channels.add(channel)) {
+                PostgresqlConnection connection = current.get();
+                if (connection != null)
+                    registered = execute(connection, "LISTEN " + channel);
+            }
+            return registered.thenMany(notifications.filter(notification -> notification.channel().equals(channel)));
+        });
+    }
+
+    private Flux<ChannelNotification> listen(Connection connection) {
+        if (!(connection instanceof PostgresqlConnection postgresqlConnection))
+            return Flux.error(new IllegalStateException("LISTEN requires a Postgres connection but got " + connection));
+        current.set(postgresqlConnection);
+        return Flux.fromIterable(channels)
+                .concatMap(channel -> execute(postgresqlConnection, "LISTEN " + channel))
+                .doOnComplete(() -> log.info("Listening for notifications on {}", channels))
+                .thenMany(Flux.concat(
+                        Flux.fromIterable(channels).map(ChannelNotification::reconnect),
+                        postgresqlConnection.getNotifications()
+                                .map(notification -> new ChannelNotification(notification.getName(), notification.getParameter()))))
+                .doFinally(signal -> current.compareAndSet(postgresqlConnection, null));
+    }
+
+    private static Mono<Void> execute(PostgresqlConnection connection, String sql) {
+        return connection.createStatement(sql)
+                .execute()
+                .flatMap(PostgresqlResult::getRowsUpdated)
+                .then();
+    }
+
+    /**
+     * A notification, or with a {@code null} payload the signal that the connection was (re)established and
+     * notifications sent before may have been missed.
+     */
+    public record ChannelNotification(String channel, String payload) {
+
+        static ChannelNotification reconnect(String channel) {
+            return new ChannelNotification(channel, null);
+        }
+
+        public boolean isReconnect() {
+            return payload == null;
+        }
+    }
+}
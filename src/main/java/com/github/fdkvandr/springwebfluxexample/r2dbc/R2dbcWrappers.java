@@ -0,0 +1,24 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.r2dbc.spi.Wrapped;
+
+/**
+ * Finds a driver or pool object behind the decorators of this application ({@link MeteredConnectionFactory},
+ * {@link CancellingConnectionFactory}, ...) and those of Spring and R2DBC pool, which all implement {@link Wrapped}.
+ */
+public final class R2dbcWrappers {
+
+    private R2dbcWrappers() {
+    }
+
+    /**
+     * The first object of the given type along the chain of {@link Wrapped#unwrap()}, starting with {@code wrapper}
+     * itself, or {@code null} when there is none.
+     */
+    public static <T> T unwrap(Object wrapper, Class<T> type) {
+        Object target = wrapper;
+        while (!type.isInstance(target) && target instanceof Wrapped<?> wrapped)
+            target = wrapped.unwrap();
+        return type.isInstance(target) ? type.cast(target) : null;
+    }
+}
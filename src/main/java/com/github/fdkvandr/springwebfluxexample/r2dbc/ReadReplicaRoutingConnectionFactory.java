@@ -0,0 +1,64 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import io.r2dbc.spi.ConnectionFactoryMetadata;
+import lombok.extern.slf4j.Slf4j;
+import reactor.core.publisher.Mono;
+import reactor.util.context.Context;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+
+/**
+ * Hands out replica connections to pipelines marked with {@link #readOnly()} and primary connections to everything
+ * else. Transactions bind their connection when they begin, so transactional work never reaches the replica. When the
+ * replica cannot be reached, reads go to the primary until the mark-down period has passed.
+ */
+@Slf4j
+public class ReadReplicaRoutingConnectionFactory implements ConnectionFactory {
+
+    private static final String READ_ONLY_KEY = ReadReplicaRoutingConnectionFactory.class.getName() + ".READ_ONLY";
+    private static final ContextView READ_ONLY = Context.of(READ_ONLY_KEY, Boolean.TRUE);
+
+    private final ConnectionFactory primary;
+    private final ConnectionFactory replica;
+    private final Duration markDownPeriod;
+    private volatile long replicaDownUntil = System.nanoTime();
+
+    public ReadReplicaRoutingConnectionFactory(ConnectionFactory primary, ConnectionFactory replica, Duration markDownPeriod) {
+        this.primary = primary;
+        this.replica = replica;
+        this.markDownPeriod = markDownPeriod;
+    }
+
+    /**
+     * Context to write into a read-only pipeline, stale reads within the replication lag have to be acceptable.
+     */
+    public static ContextView readOnly() {
+        return READ_ONLY;
+    }
+
+    @Override
+    public Mono<Connection> create() {
+        return Mono.deferContextual(context -> {
+            if (!context.getOrDefault(READ_ONLY_KEY, Boolean.FALSE) || isReplicaDown())
+                return Mono.<Connection>from(primary.create());
+            return Mono.<Connection>from(replica.create())
+                    .onErrorResume(e -> {
+                        log.warn("Replica unavailable, routing reads to the primary for {}", markDownPeriod, e);
+                        replicaDownUntil = System.nanoTime() + markDownPeriod.toNanos();
+                        return Mono.from(primary.create());
+                    });
+        });
+    }
+
+    @Override
+    public ConnectionFactoryMetadata getMetadata() {
+        return primary.getMetadata();
+    }
+
+    private boolean isReplicaDown() {
+        return System.nanoTime() - replicaDownUntil < 0;
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.fdkvandr.springwebfluxexample.repository;
+
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeChange;
+import org.springframework.data.r2dbc.repository.Modifying;
+import org.springframework.data.r2dbc.repository.Query;
+import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.OffsetDateTime;
+
+public interface AnimeChangeRepository extends ReactiveCrudRepository<AnimeChange, Long> {
+
+    @Query("SELECT coalesce(max(seq), 0) FROM anime_change")
+    Mono<Long> findLastSeq();
+
+    /**
+     * Changes after {@code afterSeq} plus the listed ones, which were skipped earlier because their transaction had
+     * not committed yet.
+     */
+    @Query("SELECT * FROM anime_change WHERE seq > :afterSeq OR seq = ANY(:seqs) ORDER BY seq LIMIT :limit")
+    Flux<AnimeChange> findAfter(long afterSeq, Long[] seqs, int limit);
+
+    @Modifying
+    @Query("DELETE FROM anime_change WHERE changed_at < :before")
+    Mono<Long> deleteChangedBefore(OffsetDateTime before);
+}
@@ -1,10 +1,39 @@
 package com.github.fdkvandr.springwebfluxexample.repository;
 
 import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import org.springframework.data.r2dbc.repository.Query;
 import org.springframework.data.repository.reactive.ReactiveCrudRepository;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
-public interface AnimeRepository extends ReactiveCrudRepository<Anime, Integer> {
+public interface AnimeRepository extends ReactiveCrudRepository<Anime, Integer>, AnimeRepositoryCustom {
 
     Mono<Anime> findById(int id);
+
+    @Query("SELECT * FROM anime WHERE id > :afterId ORDER BY id LIMIT :limit")
+    Flux<Anime> findPageAfter(int afterId, int limit);
+
+    @Query("SELECT * FROM anime WHERE id = ANY(:ids)")
+    Flux<Anime> findByIds(Integer[] ids);
+
+    @Query("SELECT version FROM anime WHERE id = :id")
+    Mono<Long> findVersionById(int id);
+
+    /**
+     * Changes with every insert, update and delete, used as the ETag of the whole catalogue.
+     */
+    @Query("SELECT count(*) || '-' || coalesce(max(id), 0) || '-' || coalesce(sum(version), 0) FROM anime")
+    Mono<String> findCollectionStamp();
+
+    @Query("UPDATE anime SET name = :name, version = version + 1 WHERE id = :id RETURNING *")
+    Mono<Anime> updateName(int id, String name);
+
+    @Query("UPDATE anime SET name = :name, version = version + 1 WHERE id = :id AND version = :version RETURNING *")
+    Mono<Anime> updateNameIfVersion(int id, String name, long version);
+
+    @Query("DELETE FROM anime WHERE id = :id RETURNING id")
+    Mono<Integer> deleteAndReturnId(int id);
+
+    @Query("DELETE FROM anime WHERE id = :id AND version = :version RETURNING id")
+    Mono<Integer> deleteAndReturnIdIfVersion(int id, long version);
 }
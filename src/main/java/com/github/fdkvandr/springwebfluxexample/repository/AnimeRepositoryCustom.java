@@ -0,0 +1,51 @@
+package com.github.fdkvandr.springwebfluxexample.repository;
+
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+
+public interface AnimeRepositoryCustom {
+
+    /**
+     * Streams the whole table ordered by id, pulling {@code fetchSize} rows per round-trip through a Postgres portal
+     * instead of buffering the complete result set in the driver.
+     */
+    Flux<Anime> streamAll(int fetchSize);
+
+    /**
+     * Ranks the animes whose lower-cased name starts with, or is trigram-similar to, the lower-cased query. Prefix
+     * matches score above 1, the rest by similarity. Returns the matches after the given score and id, ordered by
+     * score descending and id ascending. Backed by the {@code pg_trgm} GIN and {@code text_pattern_ops} indexes on
+     * {@code lower(name)}.
+     */
+    Flux<ScoredAnime> search(String query, float beforeScore, int afterId, int limit);
+
+    /**
+     * Inserts all animes with a single batched statement (one round-trip) and returns them with their generated ids and
+     * versions, in the same order as given.
+     */
+    Flux<Anime> insertAll(List<Anime> animes);
+
+    /**
+     * Marks the current transaction as a bulk load, which the change log records as a single
+     * {@link com.github.fdkvandr.springwebfluxexample.domain.AnimeChange.Operation#RESYNC RESYNC} entry instead of one
+     * entry per anime. Has to run inside the transaction.
+     */
+    Mono<Void> markBulkLoad();
+
+    /**
+     * Loads the animes with {@code COPY ... FROM STDIN} and returns the number of copied rows.
+     */
+    Mono<Long> copyAll(Flux<Anime> animes);
+
+    /**
+     * Loads the animes into a staging table with {@code COPY} and inserts the names that are not in the table yet.
+     * Has to run inside a transaction, the staging table is dropped on commit. Returns the number of inserted rows.
+     */
+    Mono<Long> copyAndMerge(Flux<Anime> animes);
+
+    record ScoredAnime(Anime anime, float score) {
+    }
+}
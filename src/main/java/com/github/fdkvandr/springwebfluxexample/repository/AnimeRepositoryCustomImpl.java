@@ -0,0 +1,157 @@
+package com.github.fdkvandr.springwebfluxexample.repository;
+
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.R2dbcWrappers;
+import io.r2dbc.postgresql.api.PostgresqlConnection;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.Result;
+import io.r2dbc.spi.Statement;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.r2dbc.convert.R2dbcConverter;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+
+@RequiredArgsConstructor
+public class AnimeRepositoryCustomImpl implements AnimeRepositoryCustom {
+
+    private static final int COPY_ROWS_PER_MESSAGE = 1000;
+    private static final String SEARCH_SQL = """
+            SELECT * FROM (
+                SELECT id, name, version,
+                       ((lower(name) LIKE :prefix)::int + similarity(lower(name), :query))::real AS score
+                FROM anime
+                WHERE lower(name) LIKE :prefix OR lower(name) % :query
+            ) matches
+            WHERE score < :score OR (score = :score AND id > :afterId)
+            ORDER BY score DESC, id
+            LIMIT :limit""";
+
+    private final DatabaseClient databaseClient;
+    private final R2dbcConverter r2dbcConverter;
+
+    @Override
+    public Flux<Anime> streamAll(int fetchSize) {
+        // the portal stays open for as long as the consumer takes, so the statement_timeout backstop is lifted for
+        // this transaction only
+        return databaseClient.inConnectionMany(connection -> Flux.usingWhen(
+                Mono.from(connection.beginTransaction()).thenReturn(connection),
+                transaction -> Flux.from(connection.createStatement("SET LOCAL statement_timeout = 0").execute())
+                        .flatMap(Result::getRowsUpdated)
+                        .thenMany(connection.createStatement("SELECT * FROM anime ORDER BY id")
+                                .fetchSize(fetchSize)
+                                .execute())
+                        .concatMap(result -> result.map((row, metadata) ->
+                                r2dbcConverter.read(Anime.class, row, metadata))),
+                Connection::commitTransaction,
+                (transaction, e) -> transaction.rollbackTransaction(),
+                Connection::rollbackTransaction));
+    }
+
+    @Override
+    public Flux<ScoredAnime> search(String query, float beforeScore, int afterId, int limit) {
+        String normalized = query.toLowerCase(Locale.ROOT);
+        return databaseClient.sql(SEARCH_SQL)
+                .bind("query", normalized)
+                .bind("prefix", escapeLike(normalized) + "%")
+                .bind("score", beforeScore)
+                .bind("afterId", afterId)
+                .bind("limit", limit)
+                .map((row, metadata) -> new ScoredAnime(r2dbcConverter.read(Anime.class, row, metadata),
+                        row.get("score", Float.class)))
+                .all();
+    }
+
+    @Override
+    public Flux<Anime> insertAll(List<Anime> animes) {
+        if (animes.isEmpty())
+            return Flux.empty();
+        return databaseClient.inConnectionMany(connection -> {
+            Statement statement = connection.createStatement("INSERT INTO anime (name) VALUES ($1)")
+                    .returnGeneratedValues("id", "version");
+            for (int i = 0; i < animes.size(); i++) {
+                if (i > 0)
+                    statement.add();
+                statement.bind(0, animes.get(i).getName());
+            }
+            return Flux.from(statement.execute())
+                    .concatMap(result -> result.map((row, metadata) ->
+                            new Anime(row.get("id", Integer.class), null, row.get("version", Long.class))))
+                    .zipWithIterable(animes, (inserted, anime) -> anime.withId(inserted.getId()).withVersion(inserted.getVersion()));
+        });
+    }
+
+    @Override
+    public Mono<Void> markBulkLoad() {
+        return databaseClient.sql("SET LOCAL anime.bulk_load = on").then();
+    }
+
+    @Override
+    public Mono<Long> copyAll(Flux<Anime> animes) {
+        return copy("COPY anime (name) FROM STDIN", animes);
+    }
+
+    @Override
+    public Mono<Long> copyAndMerge(Flux<Anime> animes) {
+        return databaseClient.sql("CREATE TEMPORARY TABLE anime_staging (name VARCHAR NOT NULL) ON COMMIT DROP")
+                .then()
+                .then(copy("COPY anime_staging (name) FROM STDIN", animes))
+                .then(databaseClient.sql("INSERT INTO anime (name) SELECT DISTINCT s.name FROM anime_staging s "
+                                + "WHERE NOT EXISTS (SELECT 1 FROM anime a WHERE a.name = s.name)")
+                        .fetch()
+                        .rowsUpdated());
+    }
+
+    private Mono<Long> copy(String sql, Flux<Anime> animes) {
+        Flux<ByteBuffer> rows = animes
+                .buffer(COPY_ROWS_PER_MESSAGE)
+                .map(AnimeRepositoryCustomImpl::toCopyText);
+        // imports are paced by the client upload, the statement_timeout backstop must not abort them; copies run in the
+        // import transaction, so the setting ends with it
+        return databaseClient.sql("SET LOCAL statement_timeout = 0")
+                .then()
+                .then(databaseClient.inConnection(connection -> postgresqlConnection(connection).copyIn(sql, rows)));
+    }
+
+    private static PostgresqlConnection postgresqlConnection(Connection connection) {
+        PostgresqlConnection postgresqlConnection = R2dbcWrappers.unwrap(connection, PostgresqlConnection.class);
+        if (postgresqlConnection == null)
+            throw new IllegalStateException("COPY requires a Postgres connection but got " + connection);
+        return postgresqlConnection;
+    }
+
+    private static ByteBuffer toCopyText(List<Anime> animes) {
+        StringBuilder text = new StringBuilder(animes.size() * 32);
+        for (Anime anime : animes) {
+            String name = anime.getName();
+            for (int i = 0; i < name.length(); i++) {
+                char c = name.charAt(i);
+                switch (c) {
+                    case '\\' -> text.append("\\\\");
+                    case '\t' -> text.append("\\t");
+                    case '\n' -> text.append("\\n");
+                    case '\r' -> text.append("\\r");
+                    default -> text.append(c);
+                }
+            }
+            text.append('\n');
+        }
+        return ByteBuffer.wrap(text.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static String escapeLike(String value) {
+        StringBuilder escaped = new StringBuilder(value.length() + 8);
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '%' || c == '_' || c == '\\')
+                escaped.append('\\');
+            escaped.append(c);
+        }
+        return escaped.toString();
+    }
+}
@@ -0,0 +1,36 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+
+/**
+ * Parses comma separated authority columns into immutable sets. Every distinct column value is parsed once and the
+ * resulting set is shared by all users with the same roles.
+ */
+public final class Authorities {
+
+    private static final ConcurrentMap<String, Set<GrantedAuthority>> INTERNED = new ConcurrentHashMap<>();
+
+    private Authorities() {
+    }
+
+    public static Set<GrantedAuthority> parse(String authorities) {
+        if (authorities == null || authorities.isBlank())
+            return Set.of();
+        return INTERNED.computeIfAbsent(authorities, Authorities::split);
+    }
+
+    private static Set<GrantedAuthority> split(String authorities) {
+        return Arrays.stream(authorities.split(","))
+                .map(String::trim)
+                .filter(it -> !it.isEmpty())
+                .map(SimpleGrantedAuthority::new)
+                .collect(Collectors.toUnmodifiableSet());
+    }
+}
@@ -0,0 +1,84 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.security.crypto.password.PasswordEncoder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Base64;
+
+/**
+ * Remembers successful password verifications for a short time so that HTTP Basic requests do not pay for a bcrypt
+ * check every time. Entries are keyed by an HMAC over the stored hash and the presented password with a random
+ * per-process key, plaintext passwords are never kept. The stored hash carries a per-user salt and changes together
+ * with the password, so it identifies the user and a password change makes old entries unreachable. Failed
+ * verifications are never cached.
+ */
+public class CachingPasswordEncoder implements PasswordEncoder {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    private final PasswordEncoder delegate;
+    private final Cache<String, Boolean> verified;
+    private final ThreadLocal<Mac> mac;
+
+    public CachingPasswordEncoder(PasswordEncoder delegate, AnimeProperties.CredentialCache properties, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        this.verified = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getTimeToLive())
+                .recordStats()
+                .build();
+        byte[] secret = new byte[32];
+        new SecureRandom().nextBytes(secret);
+        SecretKeySpec key = new SecretKeySpec(secret, ALGORITHM);
+        this.mac = ThreadLocal.withInitial(() -> {
+            try {
+                Mac instance = Mac.getInstance(ALGORITHM);
+                instance.init(key);
+                return instance;
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("Can not create " + ALGORITHM, e);
+            }
+        });
+        CaffeineCacheMetrics.monitor(meterRegistry, verified, "credential");
+    }
+
+    @Override
+    public String encode(CharSequence rawPassword) {
+        return delegate.encode(rawPassword);
+    }
+
+    @Override
+    public boolean matches(CharSequence rawPassword, String encodedPassword) {
+        if (rawPassword == null || encodedPassword == null)
+            return delegate.matches(rawPassword, encodedPassword);
+        String key = key(rawPassword, encodedPassword);
+        if (verified.getIfPresent(key) != null)
+            return true;
+        boolean matches = delegate.matches(rawPassword, encodedPassword);
+        if (matches)
+            verified.put(key, Boolean.TRUE);
+        return matches;
+    }
+
+    @Override
+    public boolean upgradeEncoding(String encodedPassword) {
+        return delegate.upgradeEncoding(encodedPassword);
+    }
+
+    private String key(CharSequence rawPassword, String encodedPassword) {
+        Mac instance = mac.get();
+        instance.update(encodedPassword.getBytes(StandardCharsets.UTF_8));
+        instance.update((byte) 0);
+        instance.update(rawPassword.toString().getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(instance.doFinal());
+    }
+}
@@ -0,0 +1,44 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.authorization.ReactiveAuthorizationManager;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.web.server.authorization.AuthorizationContext;
+import reactor.core.publisher.Mono;
+
+/**
+ * Role check for the exchange rules that compares the authority strings in a plain loop over the authentication's
+ * authorities and answers with shared decisions, instead of streaming over the authorities on every request. Any
+ * {@link GrantedAuthority} implementation matches by its {@link GrantedAuthority#getAuthority() authority string}.
+ */
+public final class HasAuthorityAuthorizationManager implements ReactiveAuthorizationManager<AuthorizationContext> {
+
+    private static final AuthorizationDecision GRANTED = new AuthorizationDecision(true);
+    private static final AuthorizationDecision DENIED = new AuthorizationDecision(false);
+    private static final Mono<AuthorizationDecision> DENIED_MONO = Mono.just(DENIED);
+
+    private final String authority;
+
+    private HasAuthorityAuthorizationManager(String authority) {
+        this.authority = authority;
+    }
+
+    public static HasAuthorityAuthorizationManager hasRole(String role) {
+        return new HasAuthorityAuthorizationManager("ROLE_" + role);
+    }
+
+    @Override
+    public Mono<AuthorizationDecision> check(Mono<Authentication> authentication, AuthorizationContext context) {
+        return authentication
+                .map(it -> it.isAuthenticated() && hasAuthority(it) ? GRANTED : DENIED)
+                .switchIfEmpty(DENIED_MONO);
+    }
+
+    private boolean hasAuthority(Authentication authentication) {
+        for (GrantedAuthority granted : authentication.getAuthorities())
+            if (authority.equals(granted.getAuthority()))
+                return true;
+        return false;
+    }
+}
@@ -0,0 +1,181 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.server.PathContainer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+import java.util.stream.Collectors;
+
+/**
+ * Limits the requests of every authenticated user per route, answering 429 with {@code Retry-After} once the user
+ * exceeds the limit of their role. Runs right after authentication, so rejected requests never reach the handlers or
+ * the database. Each user and route has one bucket implemented with the generic cell rate algorithm: a single
+ * {@link AtomicLong} holding the time at which the bucket is empty again, advanced with compare-and-set, so checking a
+ * request costs a cache lookup and a CAS. Rejections are counted as {@code rate.limit.rejections} by route.
+ */
+public class RateLimitWebFilter implements WebFilter {
+
+    private static final long NANOS_PER_SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final List<Route> routes;
+    private final Cache<Bucket, AtomicLong> buckets;
+    private final LongSupplier nanoClock;
+
+    public RateLimitWebFilter(AnimeProperties.RateLimit properties, MeterRegistry meterRegistry) {
+        this(properties, meterRegistry, System::nanoTime);
+    }
+
+    RateLimitWebFilter(AnimeProperties.RateLimit properties, MeterRegistry meterRegistry, LongSupplier nanoClock) {
+        this.routes = properties.getRoutes().stream()
+                .map(route -> Route.of(route, meterRegistry))
+                .toList();
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getMaxBuckets())
+                .expireAfterAccess(properties.getIdleTimeout())
+                .build();
+        this.nanoClock = nanoClock;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        if (routes.stream().noneMatch(route -> route.matches(request)))
+            return chain.filter(exchange);
+        return ReactiveSecurityContextHolder.getContext()
+                .map(SecurityContext::getAuthentication)
+                .filter(Authentication::isAuthenticated)
+                .map(authentication -> waitNanos(request, authentication))
+                .defaultIfEmpty(0L)
+                .flatMap(waitNanos -> waitNanos > 0 ? reject(exchange, waitNanos) : chain.filter(exchange));
+    }
+
+    /**
+     * Takes a permit from the bucket of the first route limiting one of the user's roles, returns how long the user
+     * has to wait for one or {@code 0} when the request may pass.
+     */
+    private long waitNanos(ServerHttpRequest request, Authentication authentication) {
+        for (Route route : routes) {
+            Limit limit = route.matches(request) ? route.limitOf(authentication.getAuthorities()) : null;
+            if (limit == null)
+                continue;
+            AtomicLong emptyAt = buckets.get(new Bucket(authentication.getName(), route.name()),
+                    bucket -> new AtomicLong(Long.MIN_VALUE));
+            long waitNanos = acquire(emptyAt, nanoClock.getAsLong(), limit);
+            if (waitNanos > 0)
+                route.rejections().increment();
+            return waitNanos;
+        }
+        return 0;
+    }
+
+    static long acquire(AtomicLong emptyAt, long now, Limit limit) {
+        while (true) {
+            long current = emptyAt.get();
+            long next = Math.max(current, now) + limit.intervalNanos();
+            long excess = next - now - limit.capacityNanos();
+            if (excess > 0)
+                return excess;
+            if (emptyAt.compareAndSet(current, next))
+                return 0;
+        }
+    }
+
+    private static Mono<Void> reject(ServerWebExchange exchange, long waitNanos) {
+        long seconds = Math.max(1, (waitNanos + NANOS_PER_SECOND - 1) / NANOS_PER_SECOND);
+        exchange.getResponse().setStatusCode(HttpStatus.TOO_MANY_REQUESTS);
+        exchange.getResponse().getHeaders().set(HttpHeaders.RETRY_AFTER, Long.toString(seconds));
+        return exchange.getResponse().setComplete();
+    }
+
+    private record Bucket(String principal, String route) {
+    }
+
+    private record Param(String name, boolean present) {
+    }
+
+    /**
+     * @param intervalNanos time between two permits at the sustained rate
+     * @param capacityNanos time it takes to refill a drained bucket
+     */
+    record Limit(long intervalNanos, long capacityNanos) {
+
+        static Limit of(AnimeProperties.Limit limit) {
+            long intervalNanos = Math.max(1, Math.round(NANOS_PER_SECOND / limit.getPermitsPerSecond()));
+            return new Limit(intervalNanos, intervalNanos * Math.max(1, limit.getBurst()));
+        }
+    }
+
+    private record Route(String name, Set<HttpMethod> methods, List<PathPattern> paths, List<Param> params,
+                         Map<String, Limit> limits, Counter rejections) {
+
+        static Route of(AnimeProperties.Route route, MeterRegistry meterRegistry) {
+            return new Route(route.getName(),
+                    route.getMethods().stream()
+                            .map(method -> HttpMethod.valueOf(method.trim().toUpperCase(Locale.ROOT)))
+                            .collect(Collectors.toUnmodifiableSet()),
+                    route.getPaths().stream()
+                            .map(path -> PathPatternParser.defaultInstance.parse(path.trim()))
+                            .toList(),
+                    route.getParams().stream()
+                            .map(String::trim)
+                            .map(param -> param.startsWith("!") ? new Param(param.substring(1), false) : new Param(param, true))
+                            .toList(),
+                    route.getRoles().entrySet().stream()
+                            .collect(Collectors.toUnmodifiableMap(
+                                    entry -> "ROLE_" + entry.getKey().toUpperCase(Locale.ROOT),
+                                    entry -> Limit.of(entry.getValue()))),
+                    Counter.builder("rate.limit.rejections")
+                            .description("Requests answered with 429 Too Many Requests")
+                            .tag("route", route.getName())
+                            .register(meterRegistry));
+        }
+
+        boolean matches(ServerHttpRequest request) {
+            if (!methods.isEmpty() && !methods.contains(request.getMethod()))
+                return false;
+            PathContainer path = request.getPath().pathWithinApplication();
+            if (paths.stream().noneMatch(pattern -> pattern.matches(path)))
+                return false;
+            MultiValueMap<String, String> queryParams = request.getQueryParams();
+            return params.stream().allMatch(param -> queryParams.containsKey(param.name()) == param.present());
+        }
+
+        /**
+         * The most generous limit of the given authorities, {@code null} when none of them is limited.
+         */
+        Limit limitOf(Iterable<? extends GrantedAuthority> authorities) {
+            Limit generous = null;
+            for (GrantedAuthority authority : authorities) {
+                Limit limit = limits.get(authority.getAuthority());
+                if (limit != null && (generous == null || limit.intervalNanos() < generous.intervalNanos()))
+                    generous = limit;
+            }
+            return generous;
+        }
+    }
+}
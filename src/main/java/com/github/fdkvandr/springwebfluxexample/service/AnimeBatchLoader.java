@@ -0,0 +1,100 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.ReadReplicaRoutingConnectionFactory;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Gathers concurrent lookups by id for a short window, or until enough keys are queued, and resolves them with a single
+ * {@code WHERE id = ANY($1)} query, which takes one read permit of the {@link ConcurrencyLimiter} and runs within the
+ * {@code findById} deadline of {@link OperationDeadlines}. The batch sizes are published as the
+ * {@code anime.batch.size} summary.
+ */
+@Slf4j
+@Component
+public class AnimeBatchLoader {
+
+    private final AnimeRepository animeRepository;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final OperationDeadlines operationDeadlines;
+    private final DistributionSummary batchSize;
+    private final Disposable subscription;
+    private volatile FluxSink<Request> requests;
+
+    public AnimeBatchLoader(AnimeRepository animeRepository, ConcurrencyLimiter concurrencyLimiter,
+                            OperationDeadlines operationDeadlines, AnimeProperties animeProperties,
+                            MeterRegistry meterRegistry) {
+        AnimeProperties.BatchLoader properties = animeProperties.getBatchLoader();
+        this.animeRepository = animeRepository;
+        this.concurrencyLimiter = concurrencyLimiter;
+        this.operationDeadlines = operationDeadlines;
+        this.batchSize = DistributionSummary.builder("anime.batch.size")
+                .description("Distinct ids resolved per findById batch")
+                .register(meterRegistry);
+        // load(id) is called on whatever thread serves the request, the sink of Flux.create queues the concurrent
+        // calls in front of the batching
+        this.subscription = Flux.<Request>create(sink -> requests = sink)
+                .bufferTimeout(properties.getMaxKeys(), properties.getWindow())
+                .onBackpressureBuffer()
+                .flatMap(this::load, properties.getConcurrency())
+                // a failed query is handled in load(List), this only restarts the batching itself with a new sink
+                .doOnError(e -> log.error("Batch loader failed, restarting", e))
+                .retry()
+                .subscribe();
+    }
+
+    /**
+     * Resolves one id as part of the next batch, completes empty when the anime does not exist.
+     */
+    public Mono<Anime> load(int id) {
+        return Mono.create(sink -> requests.next(new Request(id, sink)));
+    }
+
+    @PreDestroy
+    public void dispose() {
+        subscription.dispose();
+    }
+
+    private Mono<Void> load(List<Request> batch) {
+        Integer[] ids = batch.stream()
+                .map(Request::id)
+                .distinct()
+                .toArray(Integer[]::new);
+        batchSize.record(ids.length);
+        // one read permit and deadline per query, however many lookups it resolves. The query is shared, so it is only
+        // cancelled on the server by its deadline and not when one of the callers goes away
+        Mono<Map<Integer, Anime>> query = Flux.defer(() -> animeRepository.findByIds(ids))
+                .collectMap(Anime::getId, Function.identity());
+        return concurrencyLimiter.read(operationDeadlines.read("findById", query))
+                .contextWrite(ReadReplicaRoutingConnectionFactory.readOnly())
+                .doOnNext(animes -> complete(batch, animes))
+                .onErrorResume(e -> {
+                    batch.forEach(request -> request.sink().error(e));
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private static void complete(List<Request> batch, Map<Integer, Anime> animes) {
+        for (Request request : batch)
+            request.sink().success(animes.get(request.id()));
+    }
+
+    private record Request(int id, MonoSink<Anime> sink) {
+    }
+}
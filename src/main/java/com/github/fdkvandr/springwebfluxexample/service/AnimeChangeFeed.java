@@ -0,0 +1,209 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeChange;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeChangeRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.Disposables;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Publishes the anime change log to any number of subscribers. Triggers log every insert, update and delete of the
+ * anime table, whoever made it, bulk loads as a single {@link AnimeChange.Operation#RESYNC}, and notify
+ * {@value #CHANNEL} once per transaction. On each notification the feed
+ * reads the new log entries once and hands them to all live subscribers, each of which gets its own bounded buffer.
+ * Subscribers that pass a sequence first replay the log after it. The number of live subscribers is published as
+ * {@code anime.changes.subscribers}.
+ */
+@Slf4j
+@Component
+public class AnimeChangeFeed {
+
+    static final String CHANNEL = "anime_changes";
+    private static final Long[] NO_SEQS = new Long[0];
+    private static final int MAX_GAPS = 1000;
+    private static final Duration PRUNE_INTERVAL = Duration.ofHours(1);
+
+    private final AnimeChangeRepository animeChangeRepository;
+    private final PostgresNotificationListener notificationListener;
+    private final AnimeProperties.Changes properties;
+    private final Sinks.Many<AnimeChange> hub = Sinks.many().multicast().directBestEffort();
+    /**
+     * Sequence numbers above {@link #lastSeq} that were not visible yet, with the {@link System#nanoTime()} until
+     * which they are looked for. Only touched by the serialized polling.
+     */
+    private final Map<Long, Long> gaps = new HashMap<>();
+    private long lastSeq;
+    /**
+     * Lowest sequence number the hub may still publish, set when a poll starts. Never decreases, since new gaps only
+     * open above {@link #lastSeq}.
+     */
+    private volatile long liveFloor;
+    private final Disposable.Composite subscriptions = Disposables.composite();
+
+    public AnimeChangeFeed(AnimeChangeRepository animeChangeRepository,
+                           PostgresNotificationListener notificationListener,
+                           AnimeProperties animeProperties,
+                           MeterRegistry meterRegistry) {
+        this.animeChangeRepository = animeChangeRepository;
+        this.notificationListener = notificationListener;
+        this.properties = animeProperties.getChanges();
+        Gauge.builder("anime.changes.subscribers", hub, Sinks.Many::currentSubscriberCount)
+                .description("Clients following the anime change feed")
+                .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        subscriptions.add(animeChangeRepository.findLastSeq()
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1)).maxBackoff(Duration.ofSeconds(30)))
+                .doOnNext(seq -> lastSeq = seq)
+                .thenMany(notificationListener.listen(CHANNEL))
+                .onBackpressureLatest()
+                .concatMap(notification -> poll(), 1)
+                .subscribe(hub::tryEmitNext));
+        subscriptions.add(Flux.interval(PRUNE_INTERVAL)
+                .onBackpressureDrop()
+                .concatMap(tick -> prune())
+                .subscribe());
+    }
+
+    @PreDestroy
+    public void stop() {
+        subscriptions.dispose();
+        hub.tryEmitComplete();
+    }
+
+    /**
+     * Changes in log order. Without {@code since} the feed starts with the next change, otherwise it first replays the
+     * retained changes after that sequence. Ends with an error when the subscriber falls more than the buffer size
+     * behind.
+     */
+    public Flux<AnimeChange> changes(Long since) {
+        Flux<AnimeChange> live = hub.asFlux()
+                .onBackpressureBuffer(properties.getBufferSize())
+                .onErrorMap(Exceptions::isOverflow, e -> new IllegalStateException(
+                        "Fell more than " + properties.getBufferSize() + " changes behind, resume with since", e));
+        if (since == null)
+            return live;
+        return Flux.defer(() -> {
+            long floor = liveFloor;
+            AtomicLong replayed = new AtomicLong(since);
+            Flux<Sourced> replay = replayPage(replayed)
+                    .expand(page -> page.size() < properties.getFetchSize() ? Mono.empty() : replayPage(replayed))
+                    .flatMapIterable(Function.identity())
+                    .map(change -> new Sourced(change, true));
+            // Subscribes to both right away so nothing published during the replay is missed. The live side is queued
+            // while the replay pages, so what both returned can only be dropped once merged: the replayed sequences
+            // the hub may still publish are remembered until they show up live or fall below the live floor.
+            NavigableSet<Long> replayedAhead = new TreeSet<>();
+            Flux<Sourced> published = live.filter(change -> change.getSeq() > since)
+                    .map(change -> new Sourced(change, false));
+            return Flux.mergeSequential(replay, published)
+                    .filter(sourced -> {
+                        long seq = sourced.change().getSeq();
+                        if (sourced.replayed()) {
+                            if (seq >= floor)
+                                replayedAhead.add(seq);
+                            return true;
+                        }
+                        replayedAhead.headSet(liveFloor).clear();
+                        return !replayedAhead.remove(seq);
+                    })
+                    .map(Sourced::change);
+        });
+    }
+
+    private Mono<List<AnimeChange>> replayPage(AtomicLong replayed) {
+        return Mono.defer(() -> animeChangeRepository.findAfter(replayed.get(), NO_SEQS, properties.getFetchSize())
+                .collectList()
+                .doOnNext(page -> {
+                    if (!page.isEmpty())
+                        replayed.set(page.get(page.size() - 1).getSeq());
+                }));
+    }
+
+    private Flux<AnimeChange> poll() {
+        return Flux.defer(() -> {
+                    liveFloor = gaps.keySet().stream().reduce(lastSeq + 1, Math::min);
+                    return pollPage();
+                })
+                .expand(page -> page.full() ? pollPage() : Mono.empty())
+                .flatMapIterable(Page::changes)
+                .onErrorResume(e -> {
+                    log.warn("Could not read the anime change log", e);
+                    return Mono.empty();
+                });
+    }
+
+    private Mono<Page> pollPage() {
+        return Mono.defer(() -> {
+            long now = System.nanoTime();
+            gaps.values().removeIf(deadline -> deadline - now < 0);
+            return animeChangeRepository.findAfter(lastSeq, gaps.keySet().toArray(NO_SEQS), properties.getFetchSize())
+                    .collectList()
+                    .map(page -> new Page(advance(page, now), page.size() == properties.getFetchSize()));
+        });
+    }
+
+    /**
+     * Moves {@link #lastSeq} past the page and returns the changes not published before. A sequence number skipped on
+     * the way belongs to a transaction that has not committed yet, or never will, and is looked for until the gap
+     * timeout.
+     */
+    private List<AnimeChange> advance(List<AnimeChange> page, long now) {
+        List<AnimeChange> fresh = new ArrayList<>(page.size());
+        long deadline = now + properties.getGapTimeout().toNanos();
+        for (AnimeChange change : page) {
+            long seq = change.getSeq();
+            if (gaps.remove(seq) != null) {
+                fresh.add(change);
+            } else if (seq > lastSeq) {
+                for (long missing = Math.max(lastSeq + 1, seq - MAX_GAPS); missing < seq && gaps.size() < MAX_GAPS; missing++)
+                    gaps.put(missing, deadline);
+                lastSeq = seq;
+                fresh.add(change);
+            }
+        }
+        return fresh;
+    }
+
+    private Mono<Void> prune() {
+        return animeChangeRepository.deleteChangedBefore(OffsetDateTime.now().minus(properties.getRetention()))
+                .doOnNext(deleted -> log.debug("Pruned {} anime changes", deleted))
+                .onErrorResume(e -> {
+                    log.warn("Could not prune the anime change log", e);
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    private record Page(List<AnimeChange> changes, boolean full) {
+    }
+
+    private record Sourced(AnimeChange change, boolean replayed) {
+    }
+}
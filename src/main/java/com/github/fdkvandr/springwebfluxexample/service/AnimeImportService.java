@@ -0,0 +1,91 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeSuggestIndex;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportMode;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportResult;
+import com.github.fdkvandr.springwebfluxexample.domain.IngestProgress;
+import com.github.fdkvandr.springwebfluxexample.metrics.ServiceMetrics;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import jakarta.validation.Validator;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class AnimeImportService {
+
+    private final AnimeRepository animeRepository;
+    private final AnimeProperties animeProperties;
+    private final TransactionalOperator transactionalOperator;
+    private final Validator validator;
+    private final ServiceMetrics serviceMetrics;
+    private final AnimeSuggestIndex animeSuggestIndex;
+
+    /**
+     * Writes a stream of animes in chunks, each chunk in its own transaction. Invalid animes are skipped and counted,
+     * a progress element is emitted after every chunk and once more when the stream completes. Like
+     * {@link #importAll}, every transaction shows up in the change feed as a single {@code RESYNC}.
+     */
+    public Flux<IngestProgress> ingest(Flux<Anime> animes) {
+        return serviceMetrics.timed("ingest", Flux.defer(() -> {
+            AtomicLong accepted = new AtomicLong();
+            AtomicLong rejected = new AtomicLong();
+            return animes
+                    .filter(anime -> {
+                        boolean valid = validator.validate(anime).isEmpty();
+                        if (!valid)
+                            rejected.incrementAndGet();
+                        return valid;
+                    })
+                    .buffer(animeProperties.getBatch().getChunkSize())
+                    .concatMap(chunk -> transactionalOperator.transactional(animeRepository.markBulkLoad()
+                                    .thenMany(animeRepository.insertAll(chunk)))
+                            .count(), 1)
+                    .map(written -> new IngestProgress(accepted.addAndGet(written), rejected.get(), false))
+                    .concatWith(Mono.fromSupplier(() -> new IngestProgress(accepted.get(), rejected.get(), true)))
+                    .doOnComplete(() -> log.info("Ingested {} animes, rejected {}", accepted.get(), rejected.get()))
+                    .doOnComplete(animeSuggestIndex::requestRebuild);
+        }));
+    }
+
+    /**
+     * Bulk loads a stream of animes with Postgres {@code COPY}, which is considerably faster than batched INSERTs for
+     * full catalogue refreshes. Invalid animes are skipped and counted, the load runs in a single transaction.
+     */
+    public Mono<ImportResult> importAll(Flux<Anime> animes, ImportMode mode) {
+        return serviceMetrics.timed("import", Mono.defer(() -> {
+            AtomicLong rejected = new AtomicLong();
+            Flux<Anime> validAnimes = animes.filter(anime -> {
+                boolean valid = validator.validate(anime).isEmpty();
+                if (!valid)
+                    rejected.incrementAndGet();
+                return valid;
+            });
+            long start = System.nanoTime();
+            Mono<Long> rows = mode == ImportMode.MERGE
+                    ? animeRepository.copyAndMerge(validAnimes)
+                    : animeRepository.copyAll(validAnimes);
+            return transactionalOperator.transactional(animeRepository.markBulkLoad().then(rows))
+                    .map(count -> toImportResult(mode, count, rejected.get(), System.nanoTime() - start))
+                    .doOnNext(result -> log.info("Imported {} animes in {} ms ({} rows/s), rejected {}",
+                            result.getRows(), result.getElapsedMillis(), (long) result.getRowsPerSecond(), result.getRejected()))
+                    .doOnNext(result -> animeSuggestIndex.requestRebuild());
+        }));
+    }
+
+    private static ImportResult toImportResult(ImportMode mode, long rows, long rejected, long elapsedNanos) {
+        double seconds = elapsedNanos / (double) TimeUnit.SECONDS.toNanos(1);
+        double rowsPerSecond = seconds > 0 ? rows / seconds : 0;
+        return new ImportResult(mode, rows, rejected, TimeUnit.NANOSECONDS.toMillis(elapsedNanos), rowsPerSecond);
+    }
+}
@@ -1,7 +1,16 @@
 package com.github.fdkvandr.springwebfluxexample.service;
 
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeCache;
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeSuggestIndex;
+import com.github.fdkvandr.springwebfluxexample.cache.CacheInvalidationBus;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
 import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeLookup;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimePage;
+import com.github.fdkvandr.springwebfluxexample.metrics.ServiceMetrics;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.ReadReplicaRoutingConnectionFactory;
 import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepositoryCustom.ScoredAnime;
 import io.netty.util.internal.StringUtil;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -13,6 +22,7 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import java.util.List;
+import java.util.function.Function;
 
 @Slf4j
 @Service
@@ -20,38 +30,215 @@ import java.util.List;
 public class AnimeService {
 
     private final AnimeRepository animeRepository;
+    private final AnimeProperties animeProperties;
+    private final AnimeCache animeCache;
+    private final AnimeBatchLoader animeBatchLoader;
+    private final AnimeSuggestIndex animeSuggestIndex;
+    private final ServiceMetrics serviceMetrics;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final ConcurrencyLimiter concurrencyLimiter;
+    private final OperationDeadlines operationDeadlines;
 
     public Flux<Anime> findAll() {
-        return animeRepository.findAll();
+        return serviceMetrics.timed("findAll", read("findAll", animeRepository.streamAll(animeProperties.getExport().getFetchSize()))
+                .contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()));
+    }
+
+    public Mono<AnimePage> findPage(String cursor, Integer size) {
+        return serviceMetrics.timed("findPage", Mono.defer(() -> {
+            int limit = pageSize(size);
+            int afterId = cursor == null ? 0 : PageCursor.decode(cursor);
+            return read("findPage", animeRepository.findPageAfter(afterId, limit + 1).collectList())
+                    .map(animes -> toPage(animes, limit));
+        }).contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()));
+    }
+
+    /**
+     * Ranked prefix and fuzzy search over the names, paged by an opaque keyset cursor.
+     */
+    public Mono<AnimePage> search(String query, String cursor, Integer size) {
+        return serviceMetrics.timed("search", Mono.defer(() -> {
+            String normalized = query == null ? "" : query.strip();
+            AnimeProperties.Search properties = animeProperties.getSearch();
+            if (normalized.length() < properties.getMinLength() || normalized.length() > properties.getMaxLength())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid query");
+            int limit = pageSize(size);
+            SearchCursor.Position after = cursor == null ? SearchCursor.FIRST : SearchCursor.decode(cursor);
+            return read("search", animeRepository.search(normalized, after.score(), after.id(), limit + 1).collectList())
+                    .map(matches -> toSearchPage(matches, limit));
+        }).contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()));
+    }
+
+    /**
+     * Autocomplete from the in-memory index, never queries the database.
+     */
+    public Flux<Anime> suggest(String prefix, Integer size) {
+        return serviceMetrics.timed("suggest", Flux.defer(() -> {
+            if (prefix == null || prefix.isBlank())
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid prefix");
+            if (!animeSuggestIndex.isReady())
+                throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Suggestions are not available yet");
+            int maxResults = animeProperties.getSuggest().getMaxResults();
+            int limit = size == null ? maxResults : Math.max(1, Math.min(size, maxResults));
+            return Flux.fromIterable(animeSuggestIndex.suggest(prefix.stripLeading(), limit));
+        }));
     }
 
     public Mono<Anime> findById(int id) {
-        return animeRepository.findById(id)
-                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found")));
+        // the batch loader reads the replica, which may still have the old row of an anime that was just changed. It
+        // applies the concurrency limit and the deadline once per query.
+        return serviceMetrics.timed("findById", animeCache.get(id, key -> animeCache.isRecentlyInvalidated(key)
+                        ? read("findById", animeRepository.findById(key))
+                        : animeBatchLoader.load(key))
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found"))));
+    }
+
+    /**
+     * Returns the version of the anime from the cache, or with a single column query, so conditional requests can be
+     * answered without loading the anime.
+     */
+    public Mono<Long> findVersion(int id) {
+        return serviceMetrics.timed("findVersion", Mono.defer(() -> {
+                    Anime cached = animeCache.getIfPresent(id);
+                    if (cached != null && cached.getVersion() != null)
+                        return Mono.just(cached.getVersion());
+                    Mono<Long> version = read("findVersion", animeRepository.findVersionById(id));
+                    return animeCache.isRecentlyInvalidated(id) ? version : version.contextWrite(ReadReplicaRoutingConnectionFactory.readOnly());
+                })
+                .switchIfEmpty(Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found"))));
+    }
+
+    public Mono<String> findCollectionStamp() {
+        return serviceMetrics.timed("findCollectionStamp", read("findCollectionStamp", animeRepository.findCollectionStamp())
+                .contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()));
+    }
+
+    /**
+     * Resolves the ids with one query and answers in request order, unknown ids are reported as not found.
+     */
+    public Flux<AnimeLookup> findAllById(List<Integer> ids) {
+        return serviceMetrics.timed("findAllById", Mono.defer(() -> {
+                    if (ids.isEmpty() || ids.size() > animeProperties.getLookup().getMaxIds())
+                        throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid number of ids");
+                    return read("findAllById", animeRepository.findByIds(ids.stream().distinct().toArray(Integer[]::new))
+                            .collectMap(Anime::getId, Function.identity()));
+                })
+                .contextWrite(ReadReplicaRoutingConnectionFactory.readOnly())
+                .flatMapIterable(animes -> ids.stream()
+                        .map(id -> new AnimeLookup(id, animes.containsKey(id), animes.get(id)))
+                        .toList()));
     }
 
     public Mono<Anime> save(Anime anime) {
-        return animeRepository.save(anime);
+        // a version marks an existing row for Spring Data, saving always creates a new anime
+        return serviceMetrics.timed("save", write("save", animeRepository.save(anime.withId(null).withVersion(null)))
+                .doOnNext(animeCache::put)
+                .doOnNext(animeSuggestIndex::put));
     }
 
     @Transactional
     public Flux<Anime> batchSave(List<Anime> animes) {
-        return Flux.fromIterable(animes)
+        return serviceMetrics.timed("batchSave", Flux.fromIterable(animes)
                 .doOnNext(it -> {
                     if (StringUtil.isNullOrEmpty(it.getName()))
                         throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid name");})
-                .flatMap(animeRepository::save);
+                .buffer(animeProperties.getBatch().getChunkSize())
+                .concatMap(animeRepository::insertAll)
+                .transform(it -> write("batchSave", it))
+                // the transaction may still roll back, so only drop entries instead of caching uncommitted rows
+                .doOnNext(it -> animeCache.invalidate(it.getId()))
+                // a rolled back row stays suggested until the next rebuild of the index
+                .doOnNext(animeSuggestIndex::put));
+    }
+
+    /**
+     * Updates the anime with a single statement, only if it still has {@code expectedVersion} unless that is
+     * {@code null}. Returns the anime with its new version.
+     */
+    public Mono<Anime> update(Anime anime, Long expectedVersion) {
+        Mono<Anime> updated = expectedVersion == null
+                ? animeRepository.updateName(anime.getId(), anime.getName())
+                : animeRepository.updateNameIfVersion(anime.getId(), anime.getName(), expectedVersion);
+        return serviceMetrics.timed("update", write("update", updated
+                        .switchIfEmpty(Mono.defer(() -> writeFailed(anime.getId(), expectedVersion))))
+                .doOnNext(animeCache::put)
+                .doOnNext(animeSuggestIndex::put)
+                .doOnNext(it -> cacheInvalidationBus.publishAnime(it.getId())));
+    }
+
+    /**
+     * Deletes the anime with a single statement, only if it still has {@code expectedVersion} unless that is
+     * {@code null}.
+     */
+    public Mono<Void> delete(int id, Long expectedVersion) {
+        Mono<Integer> deleted = expectedVersion == null
+                ? animeRepository.deleteAndReturnId(id)
+                : animeRepository.deleteAndReturnIdIfVersion(id, expectedVersion);
+        return serviceMetrics.timed("delete", write("delete", deleted
+                        .switchIfEmpty(Mono.defer(() -> writeFailed(id, expectedVersion))))
+                .doOnNext(it -> {
+                    animeCache.invalidate(id);
+                    animeSuggestIndex.remove(id);
+                    cacheInvalidationBus.publishAnime(id);
+                })
+                .then());
+    }
+
+    /**
+     * Runs a read of the database within its deadline and the read concurrency limit, the limit sees the deadline
+     * being exceeded as a timeout.
+     */
+    private <T> Mono<T> read(String operation, Mono<T> query) {
+        return concurrencyLimiter.read(operationDeadlines.read(operation, query));
+    }
+
+    private <T> Flux<T> read(String operation, Flux<T> query) {
+        return concurrencyLimiter.read(operationDeadlines.read(operation, query));
+    }
+
+    private <T> Mono<T> write(String operation, Mono<T> query) {
+        return concurrencyLimiter.write(operationDeadlines.write(operation, query));
+    }
+
+    private <T> Flux<T> write(String operation, Flux<T> query) {
+        return concurrencyLimiter.write(operationDeadlines.write(operation, query));
+    }
+
+    private <T> Mono<T> writeFailed(int id, Long expectedVersion) {
+        if (expectedVersion == null)
+            return Mono.error(new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found"));
+        // no row matched, only this failure path pays a second round-trip to tell a missing anime from a stale version.
+        // It runs within the permit and deadline of the write that failed.
+        animeCache.invalidate(id);
+        return animeRepository.existsById(id)
+                .flatMap(exists -> Mono.error(exists
+                        ? new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Anime was modified")
+                        : new ResponseStatusException(HttpStatus.NOT_FOUND, "Anime not found")));
+    }
+
+    private int pageSize(Integer size) {
+        if (size == null)
+            return animeProperties.getPage().getDefaultSize();
+        if (size < 1)
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid page size");
+        return Math.min(size, animeProperties.getPage().getMaxSize());
     }
 
-    public Mono<Void> update(Anime anime) {
-        return findById(anime.getId())
-                .map(it -> anime)
-                .flatMap(animeRepository::save)
-                .then();
+    private AnimePage toPage(List<Anime> animes, int limit) {
+        if (animes.size() <= limit)
+            return new AnimePage(animes, null);
+        List<Anime> content = animes.subList(0, limit);
+        return new AnimePage(content, PageCursor.encode(content.get(limit - 1).getId()));
     }
 
-    public Mono<Void> delete(int id) {
-        return findById(id)
-                .flatMap(animeRepository::delete);
+    private AnimePage toSearchPage(List<ScoredAnime> matches, int limit) {
+        List<Anime> content = matches.stream()
+                .limit(limit)
+                .map(ScoredAnime::anime)
+                .toList();
+        if (matches.size() <= limit)
+            return new AnimePage(content, null);
+        ScoredAnime last = matches.get(limit - 1);
+        return new AnimePage(content, SearchCursor.encode(last.score(), last.anime().getId()));
     }
 }
@@ -0,0 +1,177 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Signal;
+
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Sheds database work of the anime service before it queues up on the connection pool. Reads and writes each have a
+ * limit of concurrent operations that adapts to the observed latency (AIMD): an operation answering within the latency
+ * threshold grows the limit by one while at least half of it is in use, a slower or timed out one multiplies it by the
+ * backoff ratio unless it started before the last decrease, so a burst of slow operations backs off only once.
+ * Operations over the limit fail right away with 503. The limits, the operations in flight and the
+ * rejections are published as {@code anime.concurrency.limit}, {@code anime.concurrency.in.flight} and
+ * {@code anime.concurrency.rejections}, tagged with the kind.
+ */
+@Component
+public class ConcurrencyLimiter {
+
+    private final boolean enabled;
+    private final Limit read;
+    private final Limit write;
+
+    public ConcurrencyLimiter(AnimeProperties animeProperties, MeterRegistry meterRegistry) {
+        AnimeProperties.Concurrency properties = animeProperties.getConcurrency();
+        this.enabled = properties.isEnabled();
+        this.read = new Limit("read", properties.getRead(), meterRegistry);
+        this.write = new Limit("write", properties.getWrite(), meterRegistry);
+    }
+
+    public <T> Mono<T> read(Mono<T> mono) {
+        return enabled ? read.limit(mono) : mono;
+    }
+
+    public <T> Flux<T> read(Flux<T> flux) {
+        return enabled ? read.limit(flux) : flux;
+    }
+
+    public <T> Mono<T> write(Mono<T> mono) {
+        return enabled ? write.limit(mono) : mono;
+    }
+
+    public <T> Flux<T> write(Flux<T> flux) {
+        return enabled ? write.limit(flux) : flux;
+    }
+
+    private static final class Limit {
+
+        private final String kind;
+        private final int minLimit;
+        private final int maxLimit;
+        private final long latencyThresholdNanos;
+        private final double backoffRatio;
+        private final AtomicInteger limit;
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final AtomicLong lastDecreaseNanos = new AtomicLong(System.nanoTime());
+        private final Counter rejections;
+
+        private Limit(String kind, AnimeProperties.ConcurrencyLimit properties, MeterRegistry meterRegistry) {
+            this.kind = kind;
+            this.minLimit = Math.max(1, properties.getMinLimit());
+            this.maxLimit = Math.max(minLimit, properties.getMaxLimit());
+            this.latencyThresholdNanos = properties.getLatencyThreshold().toNanos();
+            this.backoffRatio = properties.getBackoffRatio();
+            this.limit = new AtomicInteger(Math.min(maxLimit, Math.max(minLimit, properties.getInitialLimit())));
+            Gauge.builder("anime.concurrency.limit", limit, AtomicInteger::get)
+                    .description("Current adaptive limit of concurrent database operations")
+                    .tag("kind", kind)
+                    .register(meterRegistry);
+            Gauge.builder("anime.concurrency.in.flight", inFlight, AtomicInteger::get)
+                    .description("Database operations in flight")
+                    .tag("kind", kind)
+                    .register(meterRegistry);
+            this.rejections = Counter.builder("anime.concurrency.rejections")
+                    .description("Operations rejected with 503 because the limit was reached")
+                    .tag("kind", kind)
+                    .register(meterRegistry);
+        }
+
+        <T> Mono<T> limit(Mono<T> mono) {
+            return Mono.defer(() -> {
+                Permit permit = tryAcquire();
+                if (permit == null)
+                    return Mono.error(rejected());
+                return mono.doOnEach(permit::sample)
+                        .doFinally(signal -> permit.release());
+            });
+        }
+
+        <T> Flux<T> limit(Flux<T> flux) {
+            return Flux.defer(() -> {
+                Permit permit = tryAcquire();
+                if (permit == null)
+                    return Flux.error(rejected());
+                return flux.doOnEach(permit::sample)
+                        .doFinally(signal -> permit.release());
+            });
+        }
+
+        private Permit tryAcquire() {
+            int current = inFlight.incrementAndGet();
+            if (current > limit.get()) {
+                inFlight.decrementAndGet();
+                rejections.increment();
+                return null;
+            }
+            return new Permit(current, System.nanoTime());
+        }
+
+        private ResponseStatusException rejected() {
+            return new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Too many concurrent " + kind + "s");
+        }
+
+        /**
+         * Adapts the limit to one operation, {@code inFlight} operations were running including it when it started.
+         */
+        private void update(int inFlight, long startNanos, long latencyNanos, Throwable error) {
+            if (latencyNanos > latencyThresholdNanos || isTimeout(error)) {
+                // the operation ran under a limit that was already decreased for the same overload
+                long lastDecrease = lastDecreaseNanos.get();
+                if (startNanos - lastDecrease < 0 || !lastDecreaseNanos.compareAndSet(lastDecrease, System.nanoTime()))
+                    return;
+                limit.updateAndGet(current -> Math.max(minLimit, (int) (current * backoffRatio)));
+                return;
+            }
+            limit.updateAndGet(current -> inFlight * 2 >= current ? Math.min(maxLimit, current + 1) : current);
+        }
+
+        private static boolean isTimeout(Throwable error) {
+            // deadlines surface as 504 with the timeout as cause
+            for (Throwable cause = error == null ? null : Exceptions.unwrap(error); cause != null; cause = cause.getCause())
+                if (cause instanceof TimeoutException || cause instanceof R2dbcTimeoutException)
+                    return true;
+            return false;
+        }
+
+        /**
+         * One admitted operation, its latency is taken at the first signal, so streams are judged by how fast the
+         * database starts answering rather than by their length.
+         */
+        private final class Permit {
+
+            private final int inFlightAtStart;
+            private final long startNanos;
+            private final AtomicBoolean sampled = new AtomicBoolean();
+            private final AtomicBoolean released = new AtomicBoolean();
+
+            private Permit(int inFlightAtStart, long startNanos) {
+                this.inFlightAtStart = inFlightAtStart;
+                this.startNanos = startNanos;
+            }
+
+            void sample(Signal<?> signal) {
+                if (sampled.compareAndSet(false, true))
+                    update(inFlightAtStart, startNanos, System.nanoTime() - startNanos, signal.getThrowable());
+            }
+
+            void release() {
+                if (released.compareAndSet(false, true))
+                    inFlight.decrementAndGet();
+            }
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.CancellationScope;
+import io.r2dbc.spi.R2dbcTimeoutException;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Bounds database work of the anime service by a deadline per operation and stops its statements on the server when
+ * the deadline passes or the client goes away, see {@link CancellationScope}. Exceeded deadlines, and statements
+ * killed by the server side {@code statement_timeout}, fail with 504.
+ */
+@Component
+public class OperationDeadlines {
+
+    private final Duration read;
+    private final Duration write;
+    private final Map<String, Duration> operations;
+
+    public OperationDeadlines(AnimeProperties animeProperties) {
+        AnimeProperties.Deadlines properties = animeProperties.getDeadlines();
+        this.read = properties.getRead();
+        this.write = properties.getWrite();
+        this.operations = Map.copyOf(properties.getOperations());
+    }
+
+    public <T> Mono<T> read(String operation, Mono<T> mono) {
+        return bound(operation, operations.getOrDefault(operation, read), mono);
+    }
+
+    public <T> Flux<T> read(String operation, Flux<T> flux) {
+        return bound(operation, operations.getOrDefault(operation, read), flux);
+    }
+
+    public <T> Mono<T> write(String operation, Mono<T> mono) {
+        return bound(operation, operations.getOrDefault(operation, write), mono);
+    }
+
+    public <T> Flux<T> write(String operation, Flux<T> flux) {
+        return bound(operation, operations.getOrDefault(operation, write), flux);
+    }
+
+    private static <T> Mono<T> bound(String operation, Duration deadline, Mono<T> mono) {
+        return CancellationScope.propagate(mono)
+                .timeout(deadline, Mono.error(() -> timedOut(operation, new TimeoutException())))
+                .onErrorMap(R2dbcTimeoutException.class, e -> timedOut(operation, e));
+    }
+
+    /**
+     * Streams like the export may run far longer than any deadline, so the deadline applies to the first element and
+     * to the gap between two elements instead of the whole stream.
+     */
+    private static <T> Flux<T> bound(String operation, Duration deadline, Flux<T> flux) {
+        return CancellationScope.propagate(flux)
+                .timeout(Mono.delay(deadline), element -> Mono.delay(deadline),
+                        Flux.error(() -> timedOut(operation, new TimeoutException())))
+                .onErrorMap(R2dbcTimeoutException.class, e -> timedOut(operation, e));
+    }
+
+    private static ResponseStatusException timedOut(String operation, Throwable cause) {
+        return new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, operation + " timed out", cause);
+    }
+}
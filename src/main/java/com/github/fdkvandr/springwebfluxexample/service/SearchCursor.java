@@ -0,0 +1,46 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque keyset cursor of ranked search results, the payload is the score and id of the last result of the previous
+ * page. Results are ordered by score descending and id ascending.
+ */
+final class SearchCursor {
+
+    private static final String PREFIX = "score:";
+
+    /**
+     * Position before the first result, scores never reach it.
+     */
+    static final Position FIRST = new Position(Float.MAX_VALUE, 0);
+
+    private SearchCursor() {
+    }
+
+    static String encode(float lastScore, int lastId) {
+        return Base64.getUrlEncoder()
+                .withoutPadding()
+                .encodeToString((PREFIX + lastScore + ":" + lastId).getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Position decode(String cursor) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf(':');
+            if (!value.startsWith(PREFIX) || separator < PREFIX.length())
+                throw new IllegalArgumentException(value);
+            return new Position(Float.parseFloat(value.substring(PREFIX.length(), separator)),
+                    Integer.parseInt(value.substring(separator + 1)));
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+
+    record Position(float score, int id) {
+    }
+}
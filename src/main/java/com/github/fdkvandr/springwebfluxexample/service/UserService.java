@@ -1,5 +1,8 @@
 package com.github.fdkvandr.springwebfluxexample.service;
 
+import com.github.fdkvandr.springwebfluxexample.cache.CacheInvalidationBus;
+import com.github.fdkvandr.springwebfluxexample.cache.UserCache;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.ReadReplicaRoutingConnectionFactory;
 import com.github.fdkvandr.springwebfluxexample.repository.UserRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -14,11 +17,30 @@ import reactor.core.publisher.Mono;
 public class UserService implements ReactiveUserDetailsService {
 
     private final UserRepository userRepository;
-
+    private final UserCache userCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
 
     @Override
     public Mono<UserDetails> findByUsername(String username) {
-        return userRepository.findByUsername(username)
-                .cast(UserDetails.class);
+        return userCache.get(username, name -> {
+            Mono<UserDetails> user = userRepository.findByUsername(name)
+                    .cast(UserDetails.class);
+            // the replica may still have the details that were just changed
+            return userCache.isRecentlyInvalidated(name) ? user : user.contextWrite(ReadReplicaRoutingConnectionFactory.readOnly());
+        });
+    }
+
+    /**
+     * Drops the cached details of a user on every instance, has to be called whenever the user's password or
+     * authorities change.
+     */
+    public void evict(String username) {
+        userCache.invalidate(username);
+        cacheInvalidationBus.publishUser(username);
+    }
+
+    public void evictAll() {
+        userCache.invalidateAll();
+        cacheInvalidationBus.publishAllUsers();
     }
 }
@@ -1,14 +1,12 @@
-CREATE SCHEMA anime;
-
-CREATE TABLE anime.anime (
+CREATE TABLE anime (
     id SERIAL NOT NULL UNIQUE PRIMARY KEY,
     name VARCHAR NOT NULL
 );
 
-INSERT INTO anime.anime(name)
+INSERT INTO anime(name)
 VALUES ('Hellsing');
 
-CREATE TABLE anime.usr (
+CREATE TABLE usr (
     id SERIAL NOT NULL UNIQUE PRIMARY KEY,
     name VARCHAR(256) NOT NULL,
     username VARCHAR(128) NOT NULL UNIQUE,
@@ -16,6 +14,6 @@ CREATE TABLE anime.usr (
     authorities VARCHAR(256) NOT NULL
 );
 
-INSERT INTO anime.usr (name, username, password, authorities)
+INSERT INTO usr (name, username, password, authorities)
 VALUES ('Andrey', 'fdkvandr', '{bcrypt}$2a$10$WkNYtpOGZyWsxInS/zhml.ksL99/psFrtiRIMCbVrcDUjUCYyyZqW', 'ROLE_USER,ROLE_ADMIN'),
-       ('Andrey', 'user', '{bcrypt}$2a$10$WkNYtpOGZyWsxInS/zhml.ksL99/psFrtiRIMCbVrcDUjUCYyyZqW', 'ROLE_USER');
\ No newline at end of file
+       ('Andrey', 'user', '{bcrypt}$2a$10$WkNYtpOGZyWsxInS/zhml.ksL99/psFrtiRIMCbVrcDUjUCYyyZqW', 'ROLE_USER');
@@ -0,0 +1,3 @@
+-- built CONCURRENTLY so writes continue while the indexes are created, Flyway runs this script outside a transaction
+CREATE INDEX CONCURRENTLY IF NOT EXISTS anime_name_trgm_idx ON anime USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS anime_name_prefix_idx ON anime (lower(name) text_pattern_ops);
@@ -0,0 +1,52 @@
+CREATE TABLE IF NOT EXISTS anime_change
+(
+    seq        BIGSERIAL PRIMARY KEY,
+    anime_id   INT         NOT NULL,
+    operation  VARCHAR(6)  NOT NULL,
+    name       VARCHAR,
+    version    BIGINT,
+    changed_at TIMESTAMPTZ NOT NULL DEFAULT now()
+);
+
+CREATE INDEX IF NOT EXISTS anime_change_changed_at_idx ON anime_change (changed_at);
+
+-- One log row per changed anime, written in the transaction of the change.
+CREATE OR REPLACE FUNCTION record_anime_change() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF TG_OP = 'DELETE' THEN
+        INSERT INTO ${flyway:defaultSchema}.anime_change (anime_id, operation, name, version)
+        VALUES (OLD.id, TG_OP, OLD.name, OLD.version);
+    ELSE
+        INSERT INTO ${flyway:defaultSchema}.anime_change (anime_id, operation, name, version)
+        VALUES (NEW.id, TG_OP, NEW.name, NEW.version);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+-- A constant payload lets Postgres fold the notifications of one transaction into a single one, listeners read the
+-- log to find out what changed.
+CREATE OR REPLACE FUNCTION notify_anime_change() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    PERFORM pg_notify('anime_changes', '');
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS anime_change_row ON anime;
+CREATE TRIGGER anime_change_row
+    AFTER INSERT OR UPDATE OR DELETE
+    ON anime
+    FOR EACH ROW
+EXECUTE FUNCTION record_anime_change();
+
+DROP TRIGGER IF EXISTS anime_change_notify ON anime;
+CREATE TRIGGER anime_change_notify
+    AFTER INSERT OR UPDATE OR DELETE
+    ON anime
+    FOR EACH STATEMENT
+EXECUTE FUNCTION notify_anime_change();
@@ -0,0 +1,52 @@
+-- A RESYNC entry stands for all changes of a bulk load, it has no anime.
+ALTER TABLE anime_change ALTER COLUMN anime_id DROP NOT NULL;
+
+-- One batched insert per statement from its transition table instead of one insert per row. Bulk loads, marked with
+-- SET LOCAL anime.bulk_load = on, and statements changing more rows than the trigger argument are logged as a single
+-- RESYNC entry per transaction, so they can neither double the write cost of an import nor flood the change feed. The
+-- argument stays below anime.changes.buffer-size.
+CREATE OR REPLACE FUNCTION record_anime_changes() RETURNS trigger
+    LANGUAGE plpgsql AS
+$$
+BEGIN
+    IF current_setting('anime.bulk_load', true) = 'on'
+        OR (SELECT count(*) FROM (SELECT 1 FROM changed_rows LIMIT TG_ARGV[0]::int + 1) limited) > TG_ARGV[0]::int THEN
+        IF current_setting('anime.change_log_resync', true) IS DISTINCT FROM 'on' THEN
+            PERFORM set_config('anime.change_log_resync', 'on', true);
+            INSERT INTO ${flyway:defaultSchema}.anime_change (operation) VALUES ('RESYNC');
+        END IF;
+    ELSE
+        INSERT INTO ${flyway:defaultSchema}.anime_change (anime_id, operation, name, version)
+        SELECT id, TG_OP, name, version FROM changed_rows ORDER BY id;
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+DROP TRIGGER IF EXISTS anime_change_row ON anime;
+DROP FUNCTION IF EXISTS record_anime_change();
+
+-- A trigger with a transition table handles a single event
+DROP TRIGGER IF EXISTS anime_change_insert ON anime;
+CREATE TRIGGER anime_change_insert
+    AFTER INSERT
+    ON anime
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_anime_changes(100);
+
+DROP TRIGGER IF EXISTS anime_change_update ON anime;
+CREATE TRIGGER anime_change_update
+    AFTER UPDATE
+    ON anime
+    REFERENCING NEW TABLE AS changed_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_anime_changes(100);
+
+DROP TRIGGER IF EXISTS anime_change_delete ON anime;
+CREATE TRIGGER anime_change_delete
+    AFTER DELETE
+    ON anime
+    REFERENCING OLD TABLE AS changed_rows
+    FOR EACH STATEMENT
+EXECUTE FUNCTION record_anime_changes(100);
@@ -3,7 +3,8 @@ package com.github.fdkvandr.springwebfluxexample;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+// migrations and the pool warm-up need a database, MigrationIT covers them
+@SpringBootTest(properties = {"spring.flyway.enabled=false", "anime.r2dbc.warm-up=false"})
 class SpringWebfluxExampleApplicationTests {
 
 	@Test
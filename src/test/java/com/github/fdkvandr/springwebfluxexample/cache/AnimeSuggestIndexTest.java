@@ -0,0 +1,116 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+import java.util.Set;
+
+@ExtendWith(SpringExtension.class)
+class AnimeSuggestIndexTest {
+
+    private AnimeSuggestIndex animeSuggestIndex;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    private final Anime hellsing = new Anime(1, "Hellsing", 0L);
+    private final Anime hellsingUltimate = new Anime(2, "Hellsing Ultimate", 0L);
+    private final Anime helix = new Anime(3, "helix", 0L);
+    private final Anime berserk = new Anime(4, "Berserk", 0L);
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        animeSuggestIndex = new AnimeSuggestIndex(animeRepository, new AnimeProperties(), meterRegistry);
+        BDDMockito.when(animeRepository.streamAll(ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(hellsing, hellsingUltimate, helix, berserk));
+        StepVerifier.create(animeSuggestIndex.rebuild())
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("suggest returns the names starting with the prefix in alphabetical order ignoring case")
+    void suggest_ReturnsMatchesInOrder_WhenPrefixMatches() {
+        Assertions.assertEquals(List.of(helix, hellsing), animeSuggestIndex.suggest("HEL", 2));
+        Assertions.assertEquals(List.of(), animeSuggestIndex.suggest("naruto", 10));
+    }
+
+    @Test
+    @DisplayName("put and remove update the index without a rebuild")
+    void suggest_ReflectsWrites_WhenAnimesAreUpdatedAndRemoved() {
+        animeSuggestIndex.put(hellsing.withName("Akira").withVersion(1L));
+        animeSuggestIndex.remove(berserk.getId());
+        Assertions.assertEquals(List.of(hellsing.withName("Akira").withVersion(1L)), animeSuggestIndex.suggest("a", 10));
+        Assertions.assertEquals(List.of(helix, hellsingUltimate), animeSuggestIndex.suggest("hel", 10));
+        Assertions.assertEquals(List.of(), animeSuggestIndex.suggest("b", 10));
+    }
+
+    @Test
+    @DisplayName("put ignores an anime older than the indexed version")
+    void put_KeepsNewerVersion_WhenStaleAnimeIsPut() {
+        animeSuggestIndex.put(berserk.withName("Monster").withVersion(2L));
+        animeSuggestIndex.put(berserk.withName("Pluto").withVersion(1L));
+        Assertions.assertEquals(List.of(berserk.withName("Monster").withVersion(2L)), animeSuggestIndex.suggest("m", 10));
+        Assertions.assertEquals(List.of(), animeSuggestIndex.suggest("p", 10));
+    }
+
+    @Test
+    @DisplayName("the index reports its size and estimated memory usage")
+    void rebuild_PublishesMetrics_WhenBuilt() {
+        Assertions.assertEquals(4, meterRegistry.get("anime.suggest.size").gauge().value());
+        Assertions.assertTrue(meterRegistry.get("anime.suggest.memory").gauge().value() > 0);
+    }
+
+    @Test
+    @DisplayName("rebuild requested while another one runs starts again once the running one finished")
+    void rebuild_RunsAgain_WhenRequestedDuringRebuild() {
+        Sinks.Many<Anime> running = Sinks.many().unicast().onBackpressureBuffer();
+        BDDMockito.willReturn(running.asFlux(), Flux.just(hellsing, berserk))
+                .given(animeRepository).streamAll(ArgumentMatchers.anyInt());
+        animeSuggestIndex.rebuild().subscribe();
+        StepVerifier.create(animeSuggestIndex.rebuild())
+                .verifyComplete();
+
+        running.tryEmitNext(hellsing);
+        running.tryEmitComplete();
+
+        Assertions.assertEquals(List.of(berserk), animeSuggestIndex.suggest("ber", 10));
+        BDDMockito.verify(animeRepository, Mockito.times(3)).streamAll(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("refresh reads the given animes again and removes the ones that are gone")
+    void refresh_AppliesRemoteWrites_WhenIdsAreGiven() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.just(hellsing.withName("Akira").withVersion(1L)));
+        StepVerifier.create(animeSuggestIndex.refresh(Set.of(hellsing.getId(), berserk.getId())))
+                .verifyComplete();
+
+        Assertions.assertEquals(List.of(hellsing.withName("Akira").withVersion(1L)), animeSuggestIndex.suggest("a", 10));
+        Assertions.assertEquals(List.of(), animeSuggestIndex.suggest("b", 10));
+    }
+}
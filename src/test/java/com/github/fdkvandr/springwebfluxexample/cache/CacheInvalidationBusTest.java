@@ -0,0 +1,161 @@
+package com.github.fdkvandr.springwebfluxexample.cache;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener.ChannelNotification;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.Invocation;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.HashSet;
+import java.util.Set;
+
+@ExtendWith(SpringExtension.class)
+class CacheInvalidationBusTest {
+
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private AnimeCache animeCache;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    @Mock
+    private PostgresNotificationListener notificationListener;
+
+    @Mock
+    private DatabaseClient databaseClient;
+
+    @Mock
+    private DatabaseClient.GenericExecuteSpec executeSpec;
+
+    @Mock
+    private AnimeSuggestIndex animeSuggestIndex;
+
+    private final Sinks.Many<ChannelNotification> notifications = Sinks.many().multicast().onBackpressureBuffer();
+
+    private final Anime anime = new Anime(1, "Hellsing", 0L);
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        BDDMockito.when(notificationListener.listen(CacheInvalidationBus.CHANNEL))
+                .thenReturn(notifications.asFlux());
+        BDDMockito.when(databaseClient.sql(ArgumentMatchers.anyString()))
+                .thenReturn(executeSpec);
+        BDDMockito.when(executeSpec.bind(ArgumentMatchers.anyString(), ArgumentMatchers.any()))
+                .thenReturn(executeSpec);
+        BDDMockito.when(executeSpec.then())
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeSuggestIndex.refresh(ArgumentMatchers.anySet()))
+                .thenReturn(Mono.empty());
+        animeCache = new AnimeCache(animeProperties, meterRegistry);
+        cacheInvalidationBus = new CacheInvalidationBus(notificationListener, databaseClient, objectMapper, animeCache,
+                new UserCache(animeProperties, meterRegistry), animeSuggestIndex, animeProperties, meterRegistry);
+        cacheInvalidationBus.start();
+        animeCache.put(anime);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        cacheInvalidationBus.stop();
+    }
+
+    @Test
+    @DisplayName("publishAnime sends the ids invalidated within one window as one message without duplicates")
+    void publishAnime_SendsOneCoalescedMessage_WhenIdsArePublishedTogether() throws Exception {
+        cacheInvalidationBus.publishAnime(1);
+        cacheInvalidationBus.publishAnime(2);
+        cacheInvalidationBus.publishAnime(1);
+
+        ArgumentCaptor<Object> payload = ArgumentCaptor.forClass(Object.class);
+        BDDMockito.verify(executeSpec, Mockito.timeout(1000)).bind(ArgumentMatchers.eq("payload"), payload.capture());
+        CacheInvalidationBus.Message message = objectMapper.readValue((String) payload.getValue(), CacheInvalidationBus.Message.class);
+        Assertions.assertEquals(Set.of(1, 2), message.animes());
+        Assertions.assertFalse(message.allAnimes());
+    }
+
+    @Test
+    @DisplayName("a message of another instance invalidates the cached animes and records the lag")
+    void receive_InvalidatesAnime_WhenMessageComesFromAnotherInstance() throws Exception {
+        CacheInvalidationBus.Message message = new CacheInvalidationBus.Message("other", System.currentTimeMillis(),
+                false, Set.of(1), false, Set.of());
+        notifications.tryEmitNext(new ChannelNotification(CacheInvalidationBus.CHANNEL, objectMapper.writeValueAsString(message)));
+
+        Assertions.assertNull(animeCache.getIfPresent(1));
+        Assertions.assertTrue(animeCache.isRecentlyInvalidated(1));
+        Assertions.assertFalse(animeCache.isRecentlyInvalidated(2));
+        Assertions.assertEquals(1, meterRegistry.get("cache.invalidation.lag").timer().count());
+    }
+
+    @Test
+    @DisplayName("a message of another instance refreshes its animes in the suggest index, or rebuilds it for all animes")
+    void receive_UpdatesSuggestIndex_WhenMessageComesFromAnotherInstance() throws Exception {
+        CacheInvalidationBus.Message message = new CacheInvalidationBus.Message("other", System.currentTimeMillis(),
+                false, Set.of(1, 2), false, Set.of());
+        notifications.tryEmitNext(new ChannelNotification(CacheInvalidationBus.CHANNEL, objectMapper.writeValueAsString(message)));
+        BDDMockito.verify(animeSuggestIndex).refresh(Set.of(1, 2));
+        BDDMockito.verify(animeSuggestIndex, Mockito.never()).requestRebuild();
+
+        CacheInvalidationBus.Message all = new CacheInvalidationBus.Message("other", System.currentTimeMillis(),
+                true, Set.of(), false, Set.of());
+        notifications.tryEmitNext(new ChannelNotification(CacheInvalidationBus.CHANNEL, objectMapper.writeValueAsString(all)));
+        BDDMockito.verify(animeSuggestIndex).requestRebuild();
+    }
+
+    @Test
+    @DisplayName("the caches are flushed when the listener connection is reestablished")
+    void receive_FlushesCaches_WhenListenerReconnects() {
+        notifications.tryEmitNext(new ChannelNotification(CacheInvalidationBus.CHANNEL, null));
+
+        Assertions.assertNull(animeCache.getIfPresent(1));
+        Assertions.assertEquals(1, meterRegistry.get("cache.invalidation.flushes").counter().count());
+        BDDMockito.verify(animeSuggestIndex).requestRebuild();
+    }
+
+    @Test
+    @DisplayName("publishAnime sends every id published concurrently from many threads")
+    void publishAnime_SendsAllIds_WhenPublishedConcurrently() throws Exception {
+        Flux.range(1, 100)
+                .parallel()
+                .runOn(Schedulers.parallel())
+                .doOnNext(cacheInvalidationBus::publishAnime)
+                .sequential()
+                .blockLast();
+
+        Set<Integer> sent = new HashSet<>();
+        for (int attempt = 0; attempt < 100 && sent.size() < 100; attempt++) {
+            Thread.sleep(10);
+            for (Invocation invocation : Mockito.mockingDetails(executeSpec).getInvocations())
+                if (invocation.getArguments().length == 2 && "payload".equals(invocation.getArgument(0)))
+                    sent.addAll(objectMapper.readValue(invocation.<String>getArgument(1), CacheInvalidationBus.Message.class).animes());
+        }
+        Assertions.assertEquals(100, sent.size());
+    }
+}
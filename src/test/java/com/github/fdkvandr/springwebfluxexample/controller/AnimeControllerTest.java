@@ -1,6 +1,13 @@
 package com.github.fdkvandr.springwebfluxexample.controller;
 
 import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeChange;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimePage;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportMode;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportResult;
+import com.github.fdkvandr.springwebfluxexample.domain.IngestProgress;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeChangeFeed;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeImportService;
 import com.github.fdkvandr.springwebfluxexample.service.AnimeService;
 import com.github.fdkvandr.springwebfluxexample.util.AnimeCreator;
 import org.junit.jupiter.api.*;
@@ -9,7 +16,10 @@ import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.web.server.ResponseStatusException;
 import reactor.blockhound.BlockHound;
 import reactor.blockhound.BlockingOperationError;
 import reactor.core.publisher.Flux;
@@ -30,6 +40,12 @@ class AnimeControllerTest {
     @Mock
     private AnimeService animeService;
 
+    @Mock
+    private AnimeImportService animeImportService;
+
+    @Mock
+    private AnimeChangeFeed animeChangeFeed;
+
     private final Anime anime = AnimeCreator.createAnimeToBeSaved();
     private final Anime validAnime = AnimeCreator.createValidAnime();
     private final Anime updatedAnime = AnimeCreator.createValidUpdatedAnime();
@@ -43,16 +59,26 @@ class AnimeControllerTest {
     public void setUp() {
         BDDMockito.when(animeService.findAll())
                 .thenReturn(Flux.just(validAnime));
+        BDDMockito.when(animeService.findCollectionStamp())
+                .thenReturn(Mono.just("1-1-0"));
+        BDDMockito.when(animeService.findVersion(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(0L));
+        BDDMockito.when(animeService.findPage(null, 20))
+                .thenReturn(Mono.just(new AnimePage(List.of(validAnime), null)));
         BDDMockito.when(animeService.findById(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.just(validAnime));
         BDDMockito.when(animeService.save(anime))
                 .thenReturn(Mono.just(validAnime));
         BDDMockito.when(animeService.batchSave(List.of(anime, anime)))
                 .thenReturn(Flux.just(validAnime, validAnime));
-        BDDMockito.when(animeService.delete(ArgumentMatchers.anyInt()))
-                .thenReturn(Mono.empty());
-        BDDMockito.when(animeService.update(updatedAnime))
+        BDDMockito.when(animeImportService.ingest(ArgumentMatchers.any()))
+                .thenReturn(Flux.just(new IngestProgress(2, 0, true)));
+        BDDMockito.when(animeImportService.importAll(ArgumentMatchers.any(), ArgumentMatchers.eq(ImportMode.MERGE)))
+                .thenReturn(Mono.just(new ImportResult(ImportMode.MERGE, 2, 0, 1, 2000)));
+        BDDMockito.when(animeService.delete(ArgumentMatchers.anyInt(), ArgumentMatchers.isNull()))
                 .thenReturn(Mono.empty());
+        BDDMockito.when(animeService.update(updatedAnime, null))
+                .thenReturn(Mono.just(updatedAnime));
     }
 
     @Test
@@ -74,18 +100,67 @@ class AnimeControllerTest {
     @Test
     @DisplayName("findAll returns a flux of anime")
     void findAll_ReturnFluxOfAnime_WhenSuccessful() {
-        StepVerifier.create(animeController.findAll())
+        StepVerifier.create(animeController.findAll()
+                        .flatMapMany(response -> {
+                            Assertions.assertEquals("W/\"1-1-0\"", response.getHeaders().getETag());
+                            return response.getBody();
+                        }))
                 .expectSubscription()
                 .expectNext(validAnime)
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("findPage returns a page of anime")
+    void findPage_ReturnPageOfAnime_WhenSuccessful() {
+        StepVerifier.create(animeController.findPage(null, 20))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(validAnime), null))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search returns a page of matching anime")
+    void search_ReturnPageOfAnime_WhenSuccessful() {
+        BDDMockito.when(animeService.search("hell", null, null))
+                .thenReturn(Mono.just(new AnimePage(List.of(validAnime), null)));
+        StepVerifier.create(animeController.search("hell", null, null))
+                .expectSubscription()
+                .expectNext(new AnimePage(List.of(validAnime), null))
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("findById returns a Mono with anime when it exists")
     void findById_ReturnMonoOfAnime_WhenSuccessful() {
-        StepVerifier.create(animeController.findById(1))
+        StepVerifier.create(animeController.findById(1, null))
                 .expectSubscription()
-                .expectNext(validAnime)
+                .expectNextMatches(response -> validAnime.equals(response.getBody())
+                        && "\"0\"".equals(response.getHeaders().getETag()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findById returns not modified without loading the anime when If-None-Match holds the current version")
+    void findById_ReturnNotModified_WhenETagMatches() {
+        StepVerifier.create(animeController.findById(1, "\"0\""))
+                .expectSubscription()
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.NOT_MODIFIED && response.getBody() == null)
+                .verifyComplete();
+        BDDMockito.verify(animeService, Mockito.never()).findById(ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("findById returns the anime when If-None-Match holds an old version")
+    void findById_ReturnAnime_WhenETagDoesNotMatch() {
+        BDDMockito.when(animeService.findVersion(1))
+                .thenReturn(Mono.just(1L));
+        BDDMockito.when(animeService.findById(1))
+                .thenReturn(Mono.just(validAnime.withVersion(1L)));
+        StepVerifier.create(animeController.findById(1, "\"0\""))
+                .expectSubscription()
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.OK
+                        && "\"1\"".equals(response.getHeaders().getETag()))
                 .verifyComplete();
     }
 
@@ -107,20 +182,72 @@ class AnimeControllerTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("ingest reports progress of the ingested animes")
+    void ingest_ReportsProgress_WhenSuccessful() {
+        StepVerifier.create(animeController.ingest(Flux.just(anime, anime)))
+                .expectSubscription()
+                .expectNext(new IngestProgress(2, 0, true))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("importAll returns the import result")
+    void importAll_ReturnsImportResult_WhenSuccessful() {
+        StepVerifier.create(animeController.importAll(ImportMode.MERGE, Flux.just(anime, anime)))
+                .expectSubscription()
+                .expectNext(new ImportResult(ImportMode.MERGE, 2, 0, 1, 2000))
+                .verifyComplete();
+    }
+
     @Test
     @DisplayName("delete removes the anime when successful")
     void delete_RemovesTheAnime_WhenSuccessful() {
-        StepVerifier.create(animeController.delete(1))
+        StepVerifier.create(animeController.delete(1, null))
                 .expectSubscription()
                 .verifyComplete();
     }
 
-
     @Test
-    @DisplayName("update save updated anime and returns empty Mono when successful")
+    @DisplayName("update save updated anime and returns no content with the new ETag when successful")
     void update_SaveUpdatedAnime_WhenSuccessful() {
-        StepVerifier.create(animeController.update(1, updatedAnime))
+        StepVerifier.create(animeController.update(1, updatedAnime, null))
+                .expectSubscription()
+                .expectNextMatches(response -> response.getStatusCode() == HttpStatus.NO_CONTENT
+                        && "\"1\"".equals(response.getHeaders().getETag()))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("update passes the If-Match version to the service")
+    void update_PassesExpectedVersion_WhenIfMatchIsGiven() {
+        BDDMockito.when(animeService.update(updatedAnime, 0L))
+                .thenReturn(Mono.just(updatedAnime));
+        StepVerifier.create(animeController.update(1, updatedAnime, "\"0\""))
+                .expectSubscription()
+                .expectNextCount(1)
+                .verifyComplete();
+        BDDMockito.verify(animeService).update(updatedAnime, 0L);
+    }
+
+    @Test
+    @DisplayName("update returns Mono error when If-Match holds a weak tag")
+    void update_ReturnsMonoError_WhenIfMatchIsWeak() {
+        StepVerifier.create(animeController.update(1, updatedAnime, "W/\"0\""))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("changeEvents resumes after Last-Event-ID and uses the sequence as event id")
+    void changeEvents_ResumesAfterLastEventId_WhenSinceIsAbsent() {
+        AnimeChange change = AnimeChange.builder().seq(8L).animeId(1).operation(AnimeChange.Operation.UPDATE).build();
+        BDDMockito.when(animeChangeFeed.changes(7L))
+                .thenReturn(Flux.just(change));
+        StepVerifier.create(animeController.changeEvents(null, 7L).take(1))
                 .expectSubscription()
+                .expectNextMatches(event -> "8".equals(event.id()) && change.equals(event.data()))
                 .verifyComplete();
     }
-}
\ No newline at end of file
+}
@@ -1,14 +1,18 @@
 package com.github.fdkvandr.springwebfluxexample.integration;
 
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeCache;
 import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.IngestProgress;
 import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
 import com.github.fdkvandr.springwebfluxexample.util.AnimeCreator;
 import org.junit.jupiter.api.*;
 import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
+import org.mockito.Mockito;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.security.test.context.support.WithMockUser;
@@ -37,6 +41,9 @@ public class AnimeControllerIT {
     @Autowired
     private WebTestClient testClient;
 
+    @Autowired
+    private AnimeCache animeCache;
+
     private final Anime anime = AnimeCreator.createAnimeToBeSaved();
     private final Anime validAnime = AnimeCreator.createValidAnime();
     private final Anime updatedAnime = AnimeCreator.createValidUpdatedAnime();
@@ -48,14 +55,27 @@ public class AnimeControllerIT {
 
     @BeforeEach
     public void setUp() {
-        BDDMockito.when(animeRepository.findAll())
+        animeCache.invalidateAll();
+        BDDMockito.when(animeRepository.streamAll(ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(validAnime));
+        BDDMockito.when(animeRepository.findCollectionStamp())
+                .thenReturn(Mono.just("1-1-0"));
+        BDDMockito.when(animeRepository.findVersionById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(0L));
+        BDDMockito.when(animeRepository.findPageAfter(ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt()))
                 .thenReturn(Flux.just(validAnime));
         BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.just(validAnime));
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.just(validAnime));
         BDDMockito.when(animeRepository.save(anime))
                 .thenReturn(Mono.just(validAnime));
-        BDDMockito.when(animeRepository.delete(ArgumentMatchers.any(Anime.class)))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.anyList()))
+                .thenReturn(Flux.just(validAnime, validAnime));
+        BDDMockito.when(animeRepository.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString()))
+                .thenReturn(Mono.just(updatedAnime));
+        BDDMockito.when(animeRepository.deleteAndReturnId(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(1));
     }
 
     @Test
@@ -119,6 +139,58 @@ public class AnimeControllerIT {
                 .contains(validAnime);
     }
 
+    @Test
+    @DisplayName("findAllById returns the animes in request order when user is successfully authenticated and has role USER")
+    @WithUserDetails
+    void findAllById_ReturnLookups_WhenSuccessful() {
+        testClient.get()
+                .uri("/animes?ids={ids}", "2,1")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.[0].id").isEqualTo(2)
+                             .jsonPath("$.[0].found").isEqualTo(false)
+                             .jsonPath("$.[1].id").isEqualTo(validAnime.getId())
+                             .jsonPath("$.[1].anime.name").isEqualTo(validAnime.getName());
+    }
+
+    @Test
+    @DisplayName("findAll streams anime as ndjson when user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    void findAll_StreamsNdjson_WhenNdjsonIsAccepted() {
+        testClient.get()
+                .uri("/animes")
+                .accept(MediaType.APPLICATION_NDJSON)
+                .exchange()
+                .expectStatus().isOk()
+                .expectHeader().contentTypeCompatibleWith(MediaType.APPLICATION_NDJSON)
+                .expectBodyList(Anime.class)
+                .hasSize(1)
+                .contains(validAnime);
+    }
+
+    @Test
+    @DisplayName("findPage returns a page of anime when user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    void findPage_ReturnPageOfAnime_WhenSuccessful() {
+        testClient.get()
+                .uri("/animes/page?size=10")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody().jsonPath("$.content[0].id").isEqualTo(validAnime.getId())
+                             .jsonPath("$.content[0].name").isEqualTo(validAnime.getName())
+                             .jsonPath("$.next").doesNotExist();
+    }
+
+    @Test
+    @DisplayName("findPage returns bad request when cursor is invalid and user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    void findPage_ReturnsBadRequest_WhenCursorIsInvalid() {
+        testClient.get()
+                .uri("/animes/page?cursor={cursor}", "not a cursor")
+                .exchange()
+                .expectStatus().isBadRequest();
+    }
+
     @Test
     @DisplayName("findById returns a Mono with anime when it exists and user is successfully authenticated and does not have role USER")
     @WithUserDetails
@@ -131,12 +203,38 @@ public class AnimeControllerIT {
                 .isEqualTo(validAnime);
     }
 
+    @Test
+    @DisplayName("findById returns not modified without a body when If-None-Match holds the current ETag and user is successfully authenticated and has role USER")
+    @WithUserDetails
+    void findById_ReturnNotModified_WhenETagMatches() {
+        testClient.get()
+                .uri("/animes/{id}", 1)
+                .header(HttpHeaders.IF_NONE_MATCH, "\"0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectHeader().valueEquals(HttpHeaders.ETAG, "\"0\"")
+                .expectBody().isEmpty();
+    }
+
+    @Test
+    @DisplayName("findAll returns not modified when If-None-Match holds the catalogue ETag and user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    void findAll_ReturnNotModified_WhenETagMatches() {
+        testClient.get()
+                .uri("/animes")
+                .header(HttpHeaders.IF_NONE_MATCH, "W/\"1-1-0\"")
+                .exchange()
+                .expectStatus().isNotModified()
+                .expectBody().isEmpty();
+        BDDMockito.verify(animeRepository, Mockito.never()).streamAll(ArgumentMatchers.anyInt());
+    }
+
     @Test
     @DisplayName("findById returns a Mono еггое when anime does not exist and user is successfully authenticated and does not have role USER")
     @WithUserDetails
     void findById_ReturnMonoError_WhenEmptyMonoIsReturned() {
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.empty());
         testClient.get()
                 .uri("/animes/{id}", 1)
                 .exchange()
@@ -191,6 +289,23 @@ public class AnimeControllerIT {
                 .contains(validAnime, validAnime);
     }
 
+    @Test
+    @DisplayName("ingest streams progress and skips invalid animes when user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    void ingest_ReportsProgress_WhenContainsInvalidName() {
+        BDDMockito.when(animeRepository.insertAll(List.of(anime)))
+                .thenReturn(Flux.just(validAnime));
+        testClient.post()
+                .uri("/animes/ingest")
+                .contentType(MediaType.APPLICATION_NDJSON)
+                .accept(MediaType.APPLICATION_NDJSON)
+                .body(Flux.just(anime, anime.withName("")), Anime.class)
+                .exchange()
+                .expectStatus().isOk()
+                .expectBodyList(IngestProgress.class)
+                .contains(new IngestProgress(1, 1, true));
+    }
+
     @Test
     @Disabled
     @DisplayName("batchSave returns Mono error when one of the animes in the list contains empty or null name and user is successfully authenticated and does not have role USER")
@@ -221,7 +336,7 @@ public class AnimeControllerIT {
     @DisplayName("delete returns Mono error when anime does not exist and user is successfully authenticated and has role ADMIN")
     @WithUserDetails(ADMIN_USER)
     void delete_ReturnsMonoError_WhenEmptyMonoIsReturned() {
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+        BDDMockito.when(animeRepository.deleteAndReturnId(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.empty());
         testClient.delete()
                 .uri("/animes/{id}", 1)
@@ -236,8 +351,6 @@ public class AnimeControllerIT {
     @DisplayName("update save updated anime and returns empty Mono when successful and user is successfully authenticated and has role ADMIN")
     @WithUserDetails(ADMIN_USER)
     void update_SaveUpdatedAnime_WhenSuccessful() {
-        BDDMockito.when(animeRepository.save(updatedAnime))
-                .thenReturn(Mono.just(updatedAnime));
         testClient.put()
                 .uri("/animes/{id}", 1)
                 .contentType(MediaType.APPLICATION_JSON)
@@ -266,7 +379,7 @@ public class AnimeControllerIT {
     // @WithUserDetails(ADMIN_USER)
     @WithMockUser(roles = "ADMIN")
     void update_ReturnsMonoError_WhenEmptyMonoIsReturned() {
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+        BDDMockito.when(animeRepository.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString()))
                 .thenReturn(Mono.empty());
         testClient.put()
                 .uri("/animes/{id}", 1)
@@ -278,4 +391,33 @@ public class AnimeControllerIT {
                              .jsonPath("$.error").isEqualTo(HttpStatus.NOT_FOUND.getReasonPhrase())
                              .jsonPath("$.message").isEqualTo("404 NOT_FOUND \"Anime not found\"");
     }
+
+    @Test
+    @DisplayName("update returns precondition failed when If-Match holds a stale version and user is successfully authenticated and has role ADMIN")
+    @WithUserDetails(ADMIN_USER)
+    void update_ReturnsPreconditionFailed_WhenVersionIsStale() {
+        BDDMockito.when(animeRepository.updateNameIfVersion(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString(), ArgumentMatchers.anyLong()))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(true));
+        testClient.put()
+                .uri("/animes/{id}", 1)
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.IF_MATCH, "\"0\"")
+                .body(BodyInserters.fromValue(updatedAnime))
+                .exchange()
+                .expectStatus().isEqualTo(HttpStatus.PRECONDITION_FAILED)
+                .expectBody().jsonPath("$.status").isEqualTo(HttpStatus.PRECONDITION_FAILED.value());
+    }
+
+    @Test
+    @DisplayName("prometheus scrape endpoint is reachable without authentication")
+    void prometheus_ReturnsMetrics_WhenUserIsNotAuthenticated() {
+        testClient.get()
+                .uri("/actuator/prometheus")
+                .exchange()
+                .expectStatus().isOk()
+                .expectBody(String.class)
+                .value(body -> Assertions.assertTrue(body.contains("r2dbc_pool_acquire_seconds")));
+    }
 }
@@ -0,0 +1,180 @@
+package com.github.fdkvandr.springwebfluxexample.integration;
+
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.CancellationScope;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.R2dbcWrappers;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.service.AnimeService;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.HttpStatus;
+import org.springframework.r2dbc.core.DatabaseClient;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * The statements used here would keep running on the server for much longer than the test waits, and the server side
+ * statement timeout is longer than that too, so they can only be gone, and their connections back in the pool, when
+ * the cancel request reached Postgres.
+ */
+@SpringBootTest(properties = {
+        "anime.deadlines.operations[update]=1s",
+        "spring.r2dbc.properties.statementTimeout=PT3S"
+})
+public class CancellationIT {
+
+    private static final Duration SETTLE_TIMEOUT = Duration.ofSeconds(5);
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Autowired
+    private ConnectionFactory connectionFactory;
+
+    @Autowired
+    private AnimeService animeService;
+
+    @Autowired
+    private AnimeRepository animeRepository;
+
+    private Connection lockHolder;
+    private int lockedId;
+
+    @BeforeEach
+    void lockAnime() {
+        lockedId = databaseClient.sql("INSERT INTO anime (name) SELECT 'Cancellation check' FROM generate_series(1, 5) "
+                        + "RETURNING id")
+                .map(row -> row.get(0, Integer.class))
+                .all()
+                .blockLast();
+        lockHolder = Mono.from(connectionFactory.create()).block();
+        Mono.from(lockHolder.beginTransaction())
+                .thenMany(Flux.from(lockHolder.createStatement("SELECT id FROM anime WHERE id = $1 FOR UPDATE")
+                                .bind("$1", lockedId)
+                                .execute())
+                        .flatMap(result -> result.getRowsUpdated()))
+                .then()
+                .block();
+    }
+
+    @AfterEach
+    void releaseAnime() {
+        Mono.from(lockHolder.rollbackTransaction())
+                .then(Mono.from(lockHolder.close()))
+                .then(databaseClient.sql("DELETE FROM anime WHERE name = 'Cancellation check'").then())
+                .block();
+    }
+
+    @Test
+    @DisplayName("a query of an operation that exceeded its deadline is cancelled on the server")
+    void propagate_CancelsQueryOnServer_WhenDeadlineExceeded() {
+        int acquired = acquiredConnections();
+
+        StepVerifier.create(CancellationScope.propagate(databaseClient.sql("SELECT pg_sleep(30)").then())
+                        .timeout(Duration.ofMillis(200)))
+                .expectError(TimeoutException.class)
+                .verify(SETTLE_TIMEOUT);
+
+        awaitRunningStatements("SELECT pg_sleep(30)%");
+        awaitAcquiredConnections(acquired);
+    }
+
+    @Test
+    @DisplayName("statements run right after a cancellation are not hit by its cancel request")
+    void propagate_LeavesNextStatementsAlone_WhenConnectionIsReused() {
+        StepVerifier.create(CancellationScope.propagate(databaseClient.sql("SELECT pg_sleep(30)").then())
+                        .timeout(Duration.ofMillis(200)))
+                .expectError(TimeoutException.class)
+                .verify(SETTLE_TIMEOUT);
+
+        StepVerifier.create(Flux.range(0, 5)
+                        .concatMap(i -> databaseClient.sql("SELECT pg_sleep(0.1)").then().thenReturn(i))
+                        .count())
+                .expectNext(5L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("update fails with 504 and leaves no waiting statement behind when it exceeds its deadline")
+    void update_ReturnsGatewayTimeout_WhenDeadlineExceeded() {
+        int acquired = acquiredConnections();
+
+        StepVerifier.create(animeService.update(Anime.builder().id(lockedId).name("Timed out").build(), null))
+                .expectErrorMatches(error -> error instanceof ResponseStatusException e
+                        && e.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT)
+                .verify(SETTLE_TIMEOUT);
+
+        awaitRunningStatements("UPDATE anime SET name%");
+        awaitAcquiredConnections(acquired);
+    }
+
+    @Test
+    @DisplayName("update is cancelled on the server and frees its connection when the client goes away")
+    void update_CancelsQueryOnServer_WhenSubscriberCancels() {
+        int acquired = acquiredConnections();
+
+        Disposable request = animeService.update(Anime.builder().id(lockedId).name("Abandoned").build(), null)
+                .subscribe();
+        StepVerifier.create(runningStatements("UPDATE anime SET name%")
+                        .filter(count -> count == 1)
+                        .repeatWhenEmpty(50, repeats -> repeats.delayElements(Duration.ofMillis(10))))
+                .expectNext(1L)
+                .verifyComplete();
+        request.dispose();
+
+        awaitRunningStatements("UPDATE anime SET name%");
+        awaitAcquiredConnections(acquired);
+    }
+
+    @Test
+    @DisplayName("streamAll is not cut off by the statement timeout while its consumer reads slowly")
+    void streamAll_OutlivesStatementTimeout_WhenConsumerIsSlow() {
+        StepVerifier.create(animeRepository.streamAll(1)
+                        .take(5)
+                        .delayElements(Duration.ofSeconds(1))
+                        .count())
+                .expectNext(5L)
+                .verifyComplete();
+    }
+
+    private Mono<Long> runningStatements(String pattern) {
+        return databaseClient.sql("SELECT count(*) FROM pg_stat_activity WHERE state = 'active' AND query LIKE :pattern "
+                        + "AND pid <> pg_backend_pid()")
+                .bind("pattern", pattern)
+                .map(row -> row.get(0, Long.class))
+                .one();
+    }
+
+    private void awaitRunningStatements(String pattern) {
+        StepVerifier.create(runningStatements(pattern)
+                        .filter(count -> count == 0)
+                        .repeatWhenEmpty(20, repeats -> repeats.delayElements(Duration.ofMillis(100))))
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    private void awaitAcquiredConnections(int expected) {
+        StepVerifier.create(Mono.fromSupplier(this::acquiredConnections)
+                        .filter(count -> count <= expected)
+                        .repeatWhenEmpty(20, repeats -> repeats.delayElements(Duration.ofMillis(100))))
+                .expectNextMatches(count -> count <= expected)
+                .verifyComplete();
+    }
+
+    private int acquiredConnections() {
+        return R2dbcWrappers.unwrap(connectionFactory, ConnectionPool.class).getMetrics().orElseThrow().acquiredSize();
+    }
+}
@@ -0,0 +1,88 @@
+package com.github.fdkvandr.springwebfluxexample.integration;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.r2dbc.core.DatabaseClient;
+import reactor.test.StepVerifier;
+
+@SpringBootTest
+public class MigrationIT {
+
+    @Autowired
+    private DatabaseClient databaseClient;
+
+    @Test
+    @DisplayName("startup applies every migration successfully")
+    void migrate_AppliesAllMigrations_WhenApplicationStarts() {
+        StepVerifier.create(databaseClient.sql("SELECT count(*) FROM flyway_schema_history WHERE NOT success")
+                        .map(row -> row.get(0, Long.class))
+                        .one())
+                .expectNext(0L)
+                .verifyComplete();
+        StepVerifier.create(databaseClient.sql("SELECT max(version::int) FROM flyway_schema_history WHERE version IS NOT NULL")
+                        .map(row -> row.get(0, Integer.class))
+                        .one())
+                .expectNext(6)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("the search indexes exist and are valid")
+    void migrate_CreatesSearchIndexes_WhenApplicationStarts() {
+        StepVerifier.create(databaseClient.sql("""
+                                SELECT count(*) FROM pg_index i JOIN pg_class c ON c.oid = i.indexrelid
+                                WHERE c.relname IN ('anime_name_trgm_idx', 'anime_name_prefix_idx') AND i.indisvalid""")
+                        .map(row -> row.get(0, Long.class))
+                        .one())
+                .expectNext(2L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("the anime table has the version column used for optimistic locking")
+    void migrate_AddsVersionColumn_WhenApplicationStarts() {
+        StepVerifier.create(databaseClient.sql("SELECT version FROM anime ORDER BY id LIMIT 1")
+                        .map(row -> row.get(0, Long.class))
+                        .one())
+                .expectNext(0L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("the change log trigger records writes to the anime table")
+    void migrate_RecordsChanges_WhenAnimeIsWritten() {
+        StepVerifier.create(databaseClient.sql("INSERT INTO anime (name) VALUES ('Change log check') RETURNING id")
+                        .map(row -> row.get(0, Integer.class))
+                        .one()
+                        .flatMap(id -> databaseClient.sql("DELETE FROM anime WHERE id = :id")
+                                .bind("id", id)
+                                .then()
+                                .then(databaseClient.sql("SELECT string_agg(operation, ',' ORDER BY seq) FROM anime_change WHERE anime_id = :id")
+                                        .bind("id", id)
+                                        .map(row -> row.get(0, String.class))
+                                        .one())))
+                .expectNext("INSERT,DELETE")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("the change log records a bulk load as a single resync entry")
+    void migrate_RecordsResync_WhenBulkLoadIsWritten() {
+        StepVerifier.create(databaseClient.sql("SELECT coalesce(max(seq), 0) FROM anime_change")
+                        .map(row -> row.get(0, Long.class))
+                        .one()
+                        .flatMap(lastSeq -> databaseClient.sql("INSERT INTO anime (name) "
+                                        + "SELECT 'Resync check ' || i FROM generate_series(1, 101) i")
+                                .then()
+                                .then(databaseClient.sql("DELETE FROM anime WHERE name LIKE 'Resync check %'").then())
+                                .then(databaseClient.sql("SELECT string_agg(operation, ',' ORDER BY seq) FROM anime_change "
+                                                + "WHERE seq > :lastSeq")
+                                        .bind("lastSeq", lastSeq)
+                                        .map(row -> row.get(0, String.class))
+                                        .one())))
+                .expectNext("RESYNC,RESYNC")
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,67 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.r2dbc.pool.ConnectionPool;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.stream.Stream;
+
+@ExtendWith(SpringExtension.class)
+class ConnectionPoolWarmUpTest {
+
+    @Mock
+    private ConnectionPool connectionPool;
+
+    @Mock
+    private ObjectProvider<ConnectionFactory> connectionFactories;
+
+    @Test
+    @DisplayName("run warms up pools hidden behind connection factory decorators")
+    void run_WarmsUpPool_WhenPoolIsWrapped() {
+        BDDMockito.when(connectionPool.warmup()).thenReturn(Mono.just(10));
+        BDDMockito.when(connectionFactories.orderedStream())
+                .thenReturn(Stream.of(new MeteredConnectionFactory(connectionPool, new SimpleMeterRegistry(), "connectionFactory")));
+        new ConnectionPoolWarmUp(connectionFactories, new AnimeProperties()).run(null);
+        BDDMockito.verify(connectionPool).warmup();
+    }
+
+    @Test
+    @DisplayName("run does not fail startup when the database is not reachable")
+    void run_IgnoresError_WhenWarmUpFails() {
+        BDDMockito.when(connectionPool.warmup()).thenReturn(Mono.error(new IllegalStateException("connection refused")));
+        BDDMockito.when(connectionFactories.orderedStream()).thenReturn(Stream.of(connectionPool));
+        new ConnectionPoolWarmUp(connectionFactories, new AnimeProperties()).run(null);
+        BDDMockito.verify(connectionPool).warmup();
+    }
+
+    @Test
+    @DisplayName("run does not fail startup when the warm-up exceeds its timeout")
+    void run_IgnoresTimeout_WhenWarmUpHangs() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getR2dbc().setWarmUpTimeout(Duration.ofMillis(50));
+        BDDMockito.when(connectionPool.warmup()).thenReturn(Mono.never());
+        BDDMockito.when(connectionFactories.orderedStream()).thenReturn(Stream.of(connectionPool));
+        new ConnectionPoolWarmUp(connectionFactories, animeProperties).run(null);
+        BDDMockito.verify(connectionPool).warmup();
+    }
+
+    @Test
+    @DisplayName("run does nothing when warm-up is disabled")
+    void run_DoesNothing_WhenWarmUpIsDisabled() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getR2dbc().setWarmUp(false);
+        new ConnectionPoolWarmUp(connectionFactories, animeProperties).run(null);
+        BDDMockito.verify(connectionPool, Mockito.never()).warmup();
+    }
+}
@@ -0,0 +1,83 @@
+package com.github.fdkvandr.springwebfluxexample.r2dbc;
+
+import io.r2dbc.spi.Connection;
+import io.r2dbc.spi.ConnectionFactory;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@ExtendWith(SpringExtension.class)
+class ReadReplicaRoutingConnectionFactoryTest {
+
+    private ReadReplicaRoutingConnectionFactory connectionFactory;
+
+    @Mock
+    private ConnectionFactory primary;
+
+    @Mock
+    private ConnectionFactory replica;
+
+    @Mock
+    private Connection primaryConnection;
+
+    @Mock
+    private Connection replicaConnection;
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        connectionFactory = new ReadReplicaRoutingConnectionFactory(primary, replica, Duration.ofMinutes(1));
+        BDDMockito.<Object>when(primary.create())
+                .thenReturn(Mono.just(primaryConnection));
+        BDDMockito.<Object>when(replica.create())
+                .thenReturn(Mono.just(replicaConnection));
+    }
+
+    @Test
+    @DisplayName("create returns a primary connection when the pipeline is not read-only")
+    void create_ReturnsPrimaryConnection_WhenNotReadOnly() {
+        StepVerifier.create(connectionFactory.create())
+                .expectNext(primaryConnection)
+                .verifyComplete();
+        BDDMockito.verify(replica, Mockito.never()).create();
+    }
+
+    @Test
+    @DisplayName("create returns a replica connection when the pipeline is read-only")
+    void create_ReturnsReplicaConnection_WhenReadOnly() {
+        StepVerifier.create(connectionFactory.create().contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()))
+                .expectNext(replicaConnection)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("create falls back to the primary and skips the replica while it is marked down")
+    void create_ReturnsPrimaryConnection_WhenReplicaIsDown() {
+        BDDMockito.<Object>when(replica.create())
+                .thenReturn(Mono.error(new IllegalStateException("connection refused")));
+
+        StepVerifier.create(connectionFactory.create().contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()))
+                .expectNext(primaryConnection)
+                .verifyComplete();
+        StepVerifier.create(connectionFactory.create().contextWrite(ReadReplicaRoutingConnectionFactory.readOnly()))
+                .expectNext(primaryConnection)
+                .verifyComplete();
+
+        BDDMockito.verify(replica).create();
+    }
+}
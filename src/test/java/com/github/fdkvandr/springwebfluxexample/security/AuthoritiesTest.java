@@ -0,0 +1,36 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import com.github.fdkvandr.springwebfluxexample.domain.User;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.util.Set;
+
+class AuthoritiesTest {
+
+    @Test
+    @DisplayName("parse splits the authorities column into granted authorities")
+    void parse_ReturnsGrantedAuthorities_WhenColumnContainsSeveralRoles() {
+        Assertions.assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_USER"), new SimpleGrantedAuthority("ROLE_ADMIN")),
+                Authorities.parse("ROLE_USER, ROLE_ADMIN"));
+    }
+
+    @Test
+    @DisplayName("users with the same roles share one authority set")
+    void getAuthorities_ReturnsSharedSet_WhenUsersHaveSameRoles() {
+        User first = new User(1, "Andrey", "fdkvandr", "{noop}password", "ROLE_USER,ROLE_ADMIN");
+        User second = new User(2, "Andrey", "other", "{noop}password", "ROLE_USER,ROLE_ADMIN");
+        Assertions.assertSame(first.getAuthorities(), second.getAuthorities());
+        Assertions.assertSame(first.getAuthorities(), first.getAuthorities());
+    }
+
+    @Test
+    @DisplayName("setAuthorities replaces the parsed authorities")
+    void setAuthorities_ReparsesAuthorities_WhenColumnChanges() {
+        User user = new User(1, "Andrey", "user", "{noop}password", "ROLE_USER");
+        user.setAuthorities("ROLE_ADMIN");
+        Assertions.assertEquals(Set.of(new SimpleGrantedAuthority("ROLE_ADMIN")), user.getAuthorities());
+    }
+}
@@ -0,0 +1,56 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+
+@ExtendWith(SpringExtension.class)
+class CachingPasswordEncoderTest {
+
+    private static final String ENCODED = "{bcrypt}$2a$10$WkNYtpOGZyWsxInS/zhml.ksL99/psFrtiRIMCbVrcDUjUCYyyZqW";
+
+    @Mock
+    private PasswordEncoder delegate;
+
+    private CachingPasswordEncoder passwordEncoder;
+
+    @BeforeEach
+    public void setUp() {
+        passwordEncoder = new CachingPasswordEncoder(delegate, new AnimeProperties().getCredentialCache(), new SimpleMeterRegistry());
+        BDDMockito.when(delegate.matches("right", ENCODED)).thenReturn(true);
+        BDDMockito.when(delegate.matches("wrong", ENCODED)).thenReturn(false);
+    }
+
+    @Test
+    @DisplayName("matches verifies a correct password only once")
+    void matches_CallsDelegateOnce_WhenPasswordIsCorrect() {
+        Assertions.assertTrue(passwordEncoder.matches("right", ENCODED));
+        Assertions.assertTrue(passwordEncoder.matches("right", ENCODED));
+        BDDMockito.verify(delegate, Mockito.times(1)).matches("right", ENCODED);
+    }
+
+    @Test
+    @DisplayName("matches never caches a wrong password")
+    void matches_CallsDelegateEveryTime_WhenPasswordIsWrong() {
+        Assertions.assertFalse(passwordEncoder.matches("wrong", ENCODED));
+        Assertions.assertFalse(passwordEncoder.matches("wrong", ENCODED));
+        BDDMockito.verify(delegate, Mockito.times(2)).matches("wrong", ENCODED);
+    }
+
+    @Test
+    @DisplayName("matches does not reuse a verification for a different stored hash")
+    void matches_CallsDelegate_WhenStoredHashChanged() {
+        Assertions.assertTrue(passwordEncoder.matches("right", ENCODED));
+        Assertions.assertFalse(passwordEncoder.matches("right", ENCODED + "x"));
+        BDDMockito.verify(delegate).matches("right", ENCODED + "x");
+    }
+}
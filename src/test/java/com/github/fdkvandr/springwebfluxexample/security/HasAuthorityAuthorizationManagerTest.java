@@ -0,0 +1,52 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.authorization.AuthorizationDecision;
+import org.springframework.security.core.GrantedAuthority;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+class HasAuthorityAuthorizationManagerTest {
+
+    private final HasAuthorityAuthorizationManager admin = HasAuthorityAuthorizationManager.hasRole("ADMIN");
+
+    @Test
+    @DisplayName("check grants access when the user has the role")
+    void check_Grants_WhenUserHasRole() {
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken("fdkvandr", "password", "ROLE_USER", "ROLE_ADMIN");
+        StepVerifier.create(admin.check(Mono.just(authentication), null).map(AuthorizationDecision::isGranted))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("check grants access when the role is granted by another GrantedAuthority implementation")
+    void check_Grants_WhenRoleIsNotSimpleGrantedAuthority() {
+        GrantedAuthority role = () -> "ROLE_ADMIN";
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken("fdkvandr", "password", List.of(role));
+        StepVerifier.create(admin.check(Mono.just(authentication), null).map(AuthorizationDecision::isGranted))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("check denies access when the user does not have the role")
+    void check_Denies_WhenUserDoesNotHaveRole() {
+        TestingAuthenticationToken authentication = new TestingAuthenticationToken("user", "password", "ROLE_USER");
+        StepVerifier.create(admin.check(Mono.just(authentication), null).map(AuthorizationDecision::isGranted))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("check denies access when there is no authentication")
+    void check_Denies_WhenUserIsNotAuthenticated() {
+        StepVerifier.create(admin.check(Mono.empty(), null).map(AuthorizationDecision::isGranted))
+                .expectNext(false)
+                .verifyComplete();
+    }
+}
@@ -0,0 +1,128 @@
+package com.github.fdkvandr.springwebfluxexample.security;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+class RateLimitWebFilterTest {
+
+    private final TestingAuthenticationToken user = new TestingAuthenticationToken("user", "password", "ROLE_USER");
+    private final TestingAuthenticationToken admin = new TestingAuthenticationToken("admin", "password", "ROLE_USER", "ROLE_ADMIN");
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicLong now = new AtomicLong();
+    private final AtomicInteger passed = new AtomicInteger();
+    private final WebFilterChain chain = exchange -> Mono.fromRunnable(passed::incrementAndGet);
+
+    private RateLimitWebFilter rateLimitWebFilter;
+
+    @BeforeEach
+    public void setUp() {
+        AnimeProperties.Route read = new AnimeProperties.Route();
+        read.setName("read");
+        read.setMethods(List.of("GET"));
+        read.setPaths(List.of("/animes/**"));
+        read.setRoles(Map.of("user", limit(1, 2), "admin", limit(10, 2)));
+        AnimeProperties.RateLimit properties = new AnimeProperties.RateLimit();
+        properties.setRoutes(List.of(read));
+        rateLimitWebFilter = new RateLimitWebFilter(properties, meterRegistry, now::get);
+    }
+
+    @Test
+    @DisplayName("filter answers 429 with Retry-After once the burst is used up and passes again after the interval")
+    void filter_ReturnsTooManyRequests_WhenBurstIsExceeded() {
+        Assertions.assertNull(filter("/animes/1", user).getResponse().getStatusCode());
+        Assertions.assertNull(filter("/animes/1", user).getResponse().getStatusCode());
+
+        MockServerWebExchange rejected = filter("/animes/1", user);
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getResponse().getStatusCode());
+        Assertions.assertEquals("1", rejected.getResponse().getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        Assertions.assertEquals(2, passed.get());
+        Assertions.assertEquals(1, meterRegistry.get("rate.limit.rejections").tag("route", "read").counter().count());
+
+        now.addAndGet(Duration.ofSeconds(1).toNanos());
+        Assertions.assertNull(filter("/animes/1", user).getResponse().getStatusCode());
+        Assertions.assertEquals(3, passed.get());
+    }
+
+    @Test
+    @DisplayName("filter applies the most generous limit of the user's roles to a separate bucket per user")
+    void filter_UsesLimitOfRoleAndBucketOfUser_WhenUsersShareRoute() {
+        filter("/animes/1", user);
+        filter("/animes/1", user);
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, filter("/animes/1", user).getResponse().getStatusCode());
+
+        filter("/animes/1", admin);
+        filter("/animes/1", admin);
+        now.addAndGet(Duration.ofMillis(100).toNanos());
+        Assertions.assertNull(filter("/animes/1", admin).getResponse().getStatusCode());
+        Assertions.assertEquals(5, passed.get());
+    }
+
+    @Test
+    @DisplayName("filter does not limit requests outside the routes or without authentication")
+    void filter_PassesRequest_WhenRouteDoesNotMatchOrUserIsAnonymous() {
+        for (int i = 0; i < 5; i++) {
+            filter("/actuator/health", user);
+            StepVerifier.create(rateLimitWebFilter.filter(MockServerWebExchange.from(MockServerHttpRequest.get("/animes/1")), chain))
+                    .verifyComplete();
+        }
+        Assertions.assertEquals(10, passed.get());
+    }
+
+    @Test
+    @DisplayName("filter checks the query parameters of a route, so excluded requests fall through to the next route")
+    void filter_UsesNextRoute_WhenExcludedParamIsPresent() {
+        AnimeProperties.Route findAll = new AnimeProperties.Route();
+        findAll.setName("find-all");
+        findAll.setMethods(List.of("GET"));
+        findAll.setPaths(List.of("/animes"));
+        findAll.setParams(List.of("!ids"));
+        findAll.setRoles(Map.of("user", limit(1, 1)));
+        AnimeProperties.Route read = new AnimeProperties.Route();
+        read.setName("read");
+        read.setPaths(List.of("/animes/**"));
+        read.setRoles(Map.of("user", limit(1, 2)));
+        AnimeProperties.RateLimit properties = new AnimeProperties.RateLimit();
+        properties.setRoutes(List.of(findAll, read));
+        rateLimitWebFilter = new RateLimitWebFilter(properties, meterRegistry, now::get);
+
+        Assertions.assertNull(filter("/animes", user).getResponse().getStatusCode());
+        Assertions.assertEquals(HttpStatus.TOO_MANY_REQUESTS, filter("/animes", user).getResponse().getStatusCode());
+        Assertions.assertNull(filter("/animes?ids=1,2", user).getResponse().getStatusCode());
+        Assertions.assertNull(filter("/animes?ids=3", user).getResponse().getStatusCode());
+        Assertions.assertEquals(1, meterRegistry.get("rate.limit.rejections").tag("route", "find-all").counter().count());
+    }
+
+    private MockServerWebExchange filter(String path, TestingAuthenticationToken authentication) {
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get(path));
+        StepVerifier.create(rateLimitWebFilter.filter(exchange, chain)
+                        .contextWrite(ReactiveSecurityContextHolder.withAuthentication(authentication)))
+                .verifyComplete();
+        return exchange;
+    }
+
+    private static AnimeProperties.Limit limit(double permitsPerSecond, int burst) {
+        AnimeProperties.Limit limit = new AnimeProperties.Limit();
+        limit.setPermitsPerSecond(permitsPerSecond);
+        limit.setBurst(burst);
+        return limit;
+    }
+}
@@ -0,0 +1,120 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@ExtendWith(SpringExtension.class)
+class AnimeBatchLoaderTest {
+
+    private AnimeBatchLoader animeBatchLoader;
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    private final Anime validAnime = AnimeCreator.createValidAnime();
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getBatchLoader().setMaxKeys(3);
+        animeProperties.getBatchLoader().setWindow(Duration.ofSeconds(1));
+        animeProperties.getBatchLoader().setConcurrency(1);
+        animeProperties.getConcurrency().getRead().setInitialLimit(1);
+        animeProperties.getConcurrency().getRead().setLatencyThreshold(Duration.ofSeconds(10));
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        animeBatchLoader = new AnimeBatchLoader(animeRepository, new ConcurrencyLimiter(animeProperties, meterRegistry),
+                new OperationDeadlines(animeProperties), animeProperties, meterRegistry);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        animeBatchLoader.dispose();
+    }
+
+    @Test
+    @DisplayName("load queries each id of a batch once and hands the result to every caller")
+    void load_QueriesDistinctIds_WhenIdIsRequestedTwice() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.aryEq(new Integer[]{1, 2})))
+                .thenReturn(Flux.just(validAnime));
+        StepVerifier.create(Flux.merge(animeBatchLoader.load(1), animeBatchLoader.load(2), animeBatchLoader.load(1)))
+                .expectSubscription()
+                .expectNext(validAnime, validAnime)
+                .verifyComplete();
+        BDDMockito.verify(animeRepository).findByIds(ArgumentMatchers.any(Integer[].class));
+    }
+
+    @Test
+    @DisplayName("load signals the query error to every caller of the batch")
+    void load_ReturnsError_WhenQueryFails() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.error(new IllegalStateException("connection refused")));
+        StepVerifier.create(Flux.mergeDelayError(3, animeBatchLoader.load(1), animeBatchLoader.load(2), animeBatchLoader.load(3)))
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("load serves lookups emitted concurrently from many threads")
+    void load_ResolvesEveryId_WhenCalledConcurrently() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenAnswer(invocation -> Flux.fromArray(invocation.getArgument(0, Integer[].class))
+                        .map(id -> validAnime.withId(id)));
+        StepVerifier.create(Flux.range(1, 300)
+                        .flatMap(id -> animeBatchLoader.load(id).subscribeOn(Schedulers.parallel()))
+                        .count())
+                .expectNext(300L)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("load keeps serving lookups after the repository threw instead of returning an error")
+    void load_KeepsServing_WhenRepositoryThrows() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenThrow(new IllegalStateException("connection refused"))
+                .thenReturn(Flux.just(validAnime));
+        StepVerifier.create(Flux.mergeDelayError(3, animeBatchLoader.load(1), animeBatchLoader.load(2), animeBatchLoader.load(3)))
+                .expectSubscription()
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier.create(Flux.merge(animeBatchLoader.load(1), animeBatchLoader.load(2), animeBatchLoader.load(3)))
+                .expectSubscription()
+                .expectNext(validAnime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("load takes one read permit per batch query, not per lookup")
+    void load_TakesOnePermit_WhenLookupsShareQuery() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.just(validAnime));
+        StepVerifier.create(Flux.merge(animeBatchLoader.load(1), animeBatchLoader.load(2), animeBatchLoader.load(3)))
+                .expectSubscription()
+                .expectNext(validAnime)
+                .verifyComplete();
+    }
+}
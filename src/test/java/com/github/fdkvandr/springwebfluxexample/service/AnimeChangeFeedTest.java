@@ -0,0 +1,150 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeChange;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener;
+import com.github.fdkvandr.springwebfluxexample.r2dbc.PostgresNotificationListener.ChannelNotification;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeChangeRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+@ExtendWith(SpringExtension.class)
+class AnimeChangeFeedTest {
+
+    private static final ChannelNotification NOTIFICATION = new ChannelNotification(AnimeChangeFeed.CHANNEL, "");
+
+    private AnimeChangeFeed animeChangeFeed;
+
+    @Mock
+    private AnimeChangeRepository animeChangeRepository;
+
+    @Mock
+    private PostgresNotificationListener notificationListener;
+
+    private final Sinks.Many<ChannelNotification> notifications = Sinks.many().multicast().onBackpressureBuffer();
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        BDDMockito.when(animeChangeRepository.findLastSeq())
+                .thenReturn(Mono.just(0L));
+        BDDMockito.when(notificationListener.listen(AnimeChangeFeed.CHANNEL))
+                .thenReturn(notifications.asFlux());
+        animeChangeFeed = new AnimeChangeFeed(animeChangeRepository, notificationListener, new AnimeProperties(),
+                new SimpleMeterRegistry());
+        animeChangeFeed.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        animeChangeFeed.stop();
+    }
+
+    @Test
+    @DisplayName("changes publishes the new log entries to a live subscriber once notified")
+    void changes_PublishesNewChanges_WhenNotified() {
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(0L), ArgumentMatchers.any(Long[].class), ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(change(1), change(2)));
+
+        StepVerifier.create(animeChangeFeed.changes(null))
+                .expectSubscription()
+                .then(() -> notifications.tryEmitNext(NOTIFICATION))
+                .expectNext(change(1), change(2))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("changes replays the log after since and skips the live changes already replayed")
+    void changes_ReplaysLogFirst_WhenSinceIsGiven() {
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(5L), ArgumentMatchers.any(Long[].class), ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(change(6)));
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(0L), ArgumentMatchers.any(Long[].class), ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(change(6), change(7)));
+
+        StepVerifier.create(animeChangeFeed.changes(5L))
+                .expectSubscription()
+                .expectNext(change(6))
+                .then(() -> notifications.tryEmitNext(NOTIFICATION))
+                .expectNext(change(7))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("changes publishes a change committed after a later one once its sequence shows up")
+    void changes_PublishesLateChange_WhenSequenceWasSkipped() {
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(0L), ArgumentMatchers.any(Long[].class), ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(change(1), change(3)));
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(3L), ArgumentMatchers.aryEq(new Long[]{2L}), ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(change(2)));
+
+        StepVerifier.create(animeChangeFeed.changes(null))
+                .expectSubscription()
+                .then(() -> notifications.tryEmitNext(NOTIFICATION))
+                .expectNext(change(1), change(3))
+                .then(() -> notifications.tryEmitNext(NOTIFICATION))
+                .expectNext(change(2))
+                .thenCancel()
+                .verify();
+    }
+
+    @Test
+    @DisplayName("changes does not repeat a change published live while the replay was still paging towards it")
+    void changes_SkipsDuplicate_WhenPublishedDuringMultiPageReplay() {
+        animeChangeFeed.stop();
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getChanges().setFetchSize(2);
+        BDDMockito.when(animeChangeRepository.findLastSeq())
+                .thenReturn(Mono.just(7L));
+        animeChangeFeed = new AnimeChangeFeed(animeChangeRepository, notificationListener, animeProperties,
+                new SimpleMeterRegistry());
+        animeChangeFeed.start();
+        Sinks.Empty<Void> secondPage = Sinks.empty();
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(5L), ArgumentMatchers.any(Long[].class), ArgumentMatchers.anyInt()))
+                .thenReturn(Flux.just(change(6), change(7)));
+        // the replay asks for the second page first, the poll triggered by the notification asks next
+        BDDMockito.when(animeChangeRepository.findAfter(ArgumentMatchers.eq(7L), ArgumentMatchers.any(Long[].class), ArgumentMatchers.anyInt()))
+                .thenReturn(secondPage.asMono().thenMany(Flux.just(change(8))), Flux.just(change(8)));
+
+        StepVerifier.create(animeChangeFeed.changes(5L))
+                .expectSubscription()
+                .expectNext(change(6), change(7))
+                .then(() -> notifications.tryEmitNext(NOTIFICATION))
+                .then(secondPage::tryEmitEmpty)
+                .expectNext(change(8))
+                .expectNoEvent(Duration.ofMillis(100))
+                .thenCancel()
+                .verify();
+    }
+
+    private static AnimeChange change(long seq) {
+        return AnimeChange.builder()
+                .seq(seq)
+                .animeId((int) seq)
+                .operation(AnimeChange.Operation.INSERT)
+                .name("Anime " + seq)
+                .version(0L)
+                .build();
+    }
+}
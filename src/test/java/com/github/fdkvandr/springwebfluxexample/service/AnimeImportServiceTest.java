@@ -0,0 +1,117 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeSuggestIndex;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.ImportMode;
+import com.github.fdkvandr.springwebfluxexample.domain.IngestProgress;
+import com.github.fdkvandr.springwebfluxexample.metrics.ServiceMetrics;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.validation.Validation;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.reactive.TransactionalOperator;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.util.List;
+
+@ExtendWith(SpringExtension.class)
+class AnimeImportServiceTest {
+
+    private AnimeImportService animeImportService;
+
+    @Mock
+    private AnimeRepository animeRepository;
+
+    @Mock
+    private TransactionalOperator transactionalOperator;
+
+    @Mock
+    private AnimeSuggestIndex animeSuggestIndex;
+
+    private final Anime anime = AnimeCreator.createAnimeToBeSaved();
+    private final Anime validAnime = AnimeCreator.createValidAnime();
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getBatch().setChunkSize(2);
+        animeImportService = new AnimeImportService(animeRepository, animeProperties, transactionalOperator,
+                Validation.buildDefaultValidatorFactory().getValidator(), new ServiceMetrics(new SimpleMeterRegistry()),
+                animeSuggestIndex);
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Flux<Anime>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        BDDMockito.when(transactionalOperator.transactional(ArgumentMatchers.<Mono<Long>>any()))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+        BDDMockito.when(animeRepository.markBulkLoad())
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.copyAll(ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<Flux<Anime>>getArgument(0).count());
+        BDDMockito.when(animeRepository.copyAndMerge(ArgumentMatchers.any()))
+                .thenAnswer(invocation -> invocation.<Flux<Anime>>getArgument(0).count().map(count -> count - 1));
+        BDDMockito.when(animeRepository.insertAll(ArgumentMatchers.anyList()))
+                .thenAnswer(invocation -> Flux.fromIterable(invocation.<List<Anime>>getArgument(0))
+                        .map(it -> it.withId(validAnime.getId())));
+    }
+
+    @Test
+    @DisplayName("ingest writes valid animes in chunks and reports progress after each chunk")
+    void ingest_ReportsProgressPerChunk_WhenSuccessful() {
+        StepVerifier.create(animeImportService.ingest(Flux.just(anime, anime, anime)))
+                .expectSubscription()
+                .expectNext(new IngestProgress(2, 0, false))
+                .expectNext(new IngestProgress(3, 0, false))
+                .expectNext(new IngestProgress(3, 0, true))
+                .verifyComplete();
+        BDDMockito.verify(animeRepository, Mockito.times(2)).markBulkLoad();
+    }
+
+    @Test
+    @DisplayName("ingest skips and counts animes with empty or null name")
+    void ingest_CountsRejectedAnimes_WhenContainsInvalidName() {
+        StepVerifier.create(animeImportService.ingest(Flux.just(anime, anime.withName(""), anime.withName(null))))
+                .expectSubscription()
+                .expectNext(new IngestProgress(1, 2, false))
+                .expectNext(new IngestProgress(1, 2, true))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("importAll copies valid animes and reports the throughput")
+    void importAll_CopiesAnimes_WhenSuccessful() {
+        StepVerifier.create(animeImportService.importAll(Flux.just(anime, anime, anime.withName("")), ImportMode.APPEND))
+                .expectSubscription()
+                .expectNextMatches(result -> result.getMode() == ImportMode.APPEND
+                        && result.getRows() == 2
+                        && result.getRejected() == 1
+                        && result.getRowsPerSecond() >= 0)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("importAll merges through the staging table in merge mode")
+    void importAll_MergesAnimes_WhenModeIsMerge() {
+        StepVerifier.create(animeImportService.importAll(Flux.just(anime, anime), ImportMode.MERGE))
+                .expectSubscription()
+                .expectNextMatches(result -> result.getMode() == ImportMode.MERGE && result.getRows() == 1)
+                .verifyComplete();
+    }
+}
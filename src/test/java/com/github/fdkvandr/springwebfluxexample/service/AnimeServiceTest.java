@@ -1,14 +1,23 @@
 package com.github.fdkvandr.springwebfluxexample.service;
 
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeCache;
+import com.github.fdkvandr.springwebfluxexample.cache.AnimeSuggestIndex;
+import com.github.fdkvandr.springwebfluxexample.cache.CacheInvalidationBus;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
 import com.github.fdkvandr.springwebfluxexample.domain.Anime;
+import com.github.fdkvandr.springwebfluxexample.domain.AnimeLookup;
+import com.github.fdkvandr.springwebfluxexample.metrics.ServiceMetrics;
 import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepository;
+import com.github.fdkvandr.springwebfluxexample.repository.AnimeRepositoryCustom.ScoredAnime;
 import com.github.fdkvandr.springwebfluxexample.util.AnimeCreator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.*;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentMatchers;
 import org.mockito.BDDMockito;
-import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.web.server.ResponseStatusException;
 import reactor.blockhound.BlockHound;
@@ -18,6 +27,7 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Schedulers;
 import reactor.test.StepVerifier;
 
+import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -25,12 +35,16 @@ import java.util.concurrent.TimeUnit;
 @ExtendWith(SpringExtension.class)
 class AnimeServiceTest {
 
-    @InjectMocks
     private AnimeService animeService;
 
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
     @Mock
     private AnimeRepository animeRepository;
 
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
     private final Anime anime = AnimeCreator.createAnimeToBeSaved();
     private final Anime validAnime = AnimeCreator.createValidAnime();
     private final Anime updatedAnime = AnimeCreator.createValidUpdatedAnime();
@@ -42,14 +56,31 @@ class AnimeServiceTest {
 
     @BeforeEach
     public void setUp() {
-        BDDMockito.when(animeRepository.findAll())
+        animeService = createAnimeService(new AnimeProperties());
+        BDDMockito.when(animeRepository.streamAll(ArgumentMatchers.anyInt()))
                 .thenReturn(Flux.just(anime));
         BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.just(validAnime));
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.just(validAnime));
         BDDMockito.when(animeRepository.save(anime))
                 .thenReturn(Mono.just(validAnime));
-        BDDMockito.when(animeRepository.delete(ArgumentMatchers.any(Anime.class)))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.insertAll(List.of(anime, anime)))
+                .thenReturn(Flux.just(validAnime, validAnime));
+        BDDMockito.when(animeRepository.updateName(1, updatedAnime.getName()))
+                .thenReturn(Mono.just(updatedAnime));
+        BDDMockito.when(animeRepository.deleteAndReturnId(ArgumentMatchers.anyInt()))
+                .thenReturn(Mono.just(1));
+    }
+
+    private AnimeService createAnimeService(AnimeProperties animeProperties) {
+        ConcurrencyLimiter concurrencyLimiter = new ConcurrencyLimiter(animeProperties, meterRegistry);
+        OperationDeadlines operationDeadlines = new OperationDeadlines(animeProperties);
+        return new AnimeService(animeRepository, animeProperties, new AnimeCache(animeProperties, meterRegistry),
+                new AnimeBatchLoader(animeRepository, concurrencyLimiter, operationDeadlines, animeProperties,
+                        meterRegistry),
+                new AnimeSuggestIndex(animeRepository, animeProperties, meterRegistry), new ServiceMetrics(meterRegistry),
+                cacheInvalidationBus, concurrencyLimiter, operationDeadlines);
     }
 
     @Test
@@ -77,6 +108,85 @@ class AnimeServiceTest {
                 .verifyComplete();
     }
 
+    @Test
+    @DisplayName("findPage returns a page with a cursor when more animes exist")
+    void findPage_ReturnPageWithCursor_WhenMoreAnimesExist() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 2))
+                .thenReturn(Flux.just(validAnime, validAnime.withId(2)));
+        StepVerifier.create(animeService.findPage(null, 1))
+                .expectSubscription()
+                .expectNextMatches(page -> page.getContent().equals(List.of(validAnime)) && page.getNext() != null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage continues after the cursor and returns the last page without a cursor")
+    void findPage_ReturnLastPageWithoutCursor_WhenCursorIsGiven() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 2))
+                .thenReturn(Flux.just(validAnime, validAnime.withId(2)));
+        BDDMockito.when(animeRepository.findPageAfter(1, 2))
+                .thenReturn(Flux.just(validAnime.withId(2)));
+        StepVerifier.create(animeService.findPage(null, 1)
+                        .flatMap(page -> animeService.findPage(page.getNext(), 1)))
+                .expectSubscription()
+                .expectNextMatches(page -> page.getContent().equals(List.of(validAnime.withId(2))) && page.getNext() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage caps the page size")
+    void findPage_CapsPageSize_WhenSizeIsTooBig() {
+        BDDMockito.when(animeRepository.findPageAfter(0, 101))
+                .thenReturn(Flux.just(validAnime));
+        StepVerifier.create(animeService.findPage(null, 1000))
+                .expectSubscription()
+                .expectNextMatches(page -> page.getContent().equals(List.of(validAnime)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findPage returns Mono error when cursor is invalid")
+    void findPage_ReturnsMonoError_WhenCursorIsInvalid() {
+        StepVerifier.create(animeService.findPage("not a cursor", 1))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("search returns ranked matches with a cursor that continues after the last score and id")
+    void search_ReturnPageWithCursor_WhenMoreMatchesExist() {
+        BDDMockito.when(animeRepository.search("hell", Float.MAX_VALUE, 0, 2))
+                .thenReturn(Flux.just(new ScoredAnime(validAnime, 1.5f), new ScoredAnime(validAnime.withId(2), 0.4f)));
+        BDDMockito.when(animeRepository.search("hell", 1.5f, 1, 2))
+                .thenReturn(Flux.just(new ScoredAnime(validAnime.withId(2), 0.4f)));
+        StepVerifier.create(animeService.search(" hell ", null, 1)
+                        .flatMap(page -> animeService.search("hell", page.getNext(), 1)))
+                .expectSubscription()
+                .expectNextMatches(page -> page.getContent().equals(List.of(validAnime.withId(2))) && page.getNext() == null)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("search returns Mono error when the query is too short")
+    void search_ReturnsMonoError_WhenQueryIsTooShort() {
+        StepVerifier.create(animeService.search("h", null, null))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+        BDDMockito.verify(animeRepository, Mockito.never())
+                .search(ArgumentMatchers.anyString(), ArgumentMatchers.anyFloat(), ArgumentMatchers.anyInt(), ArgumentMatchers.anyInt());
+    }
+
+    @Test
+    @DisplayName("suggest returns Flux error with service unavailable while the index is not built")
+    void suggest_ReturnsFluxError_WhenIndexIsNotReady() {
+        StepVerifier.create(animeService.suggest("hel", null))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+    }
+
     @Test
     @DisplayName("findById returns a Mono with anime when it exists")
     void findById_ReturnMonoOfAnime_WhenSuccessful() {
@@ -89,14 +199,106 @@ class AnimeServiceTest {
     @Test
     @DisplayName("findById returns a Mono еггое when anime does not exist")
     void findById_ReturnMonoError_WhenEmptyMonoIsReturned() {
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
-                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.any(Integer[].class)))
+                .thenReturn(Flux.empty());
         StepVerifier.create(animeService.findById(1))
                 .expectSubscription()
                 .expectError(ResponseStatusException.class)
                 .verify();
     }
 
+    @Test
+    @DisplayName("findById records the latency of the operation")
+    void findById_RecordsTimer_WhenSuccessful() {
+        StepVerifier.create(animeService.findById(1))
+                .expectSubscription()
+                .expectNext(validAnime)
+                .verifyComplete();
+        Assertions.assertEquals(1, meterRegistry.get("anime.service")
+                .tag("operation", "findById")
+                .tag("outcome", "success")
+                .timer()
+                .count());
+    }
+
+    @Test
+    @DisplayName("findById serves repeated lookups from the cache")
+    void findById_QueriesRepositoryOnce_WhenCalledRepeatedly() {
+        StepVerifier.create(animeService.findById(1).then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(validAnime)
+                .verifyComplete();
+        BDDMockito.verify(animeRepository, Mockito.times(1)).findByIds(ArgumentMatchers.any(Integer[].class));
+    }
+
+    @Test
+    @DisplayName("findById resolves concurrent lookups of different ids with one query")
+    void findById_QueriesRepositoryOnce_WhenLookupsAreConcurrent() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getBatchLoader().setMaxKeys(3);
+        animeProperties.getBatchLoader().setWindow(Duration.ofSeconds(1));
+        animeService = createAnimeService(animeProperties);
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.aryEq(new Integer[]{1, 2, 3})))
+                .thenReturn(Flux.just(validAnime, validAnime.withId(2)));
+        StepVerifier.create(Flux.merge(animeService.findById(1), animeService.findById(2),
+                        animeService.findById(3).onErrorResume(ResponseStatusException.class, e -> Mono.empty())))
+                .expectSubscription()
+                .expectNextCount(2)
+                .verifyComplete();
+        BDDMockito.verify(animeRepository).findByIds(ArgumentMatchers.any(Integer[].class));
+    }
+
+    @Test
+    @DisplayName("findById returns the updated anime from the cache after update")
+    void findById_ReturnUpdatedAnime_WhenAnimeWasUpdated() {
+        StepVerifier.create(animeService.findById(1)
+                        .then(animeService.update(updatedAnime, null))
+                        .then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(updatedAnime)
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findById loads the anime again from the primary after delete")
+    void findById_QueriesRepositoryAgain_WhenAnimeWasDeleted() {
+        StepVerifier.create(animeService.findById(1)
+                        .then(animeService.delete(1, null))
+                        .then(animeService.findById(1)))
+                .expectSubscription()
+                .expectNext(validAnime)
+                .verifyComplete();
+        BDDMockito.verify(animeRepository, Mockito.times(1)).findByIds(ArgumentMatchers.any(Integer[].class));
+        BDDMockito.verify(animeRepository, Mockito.times(1)).findById(1);
+    }
+
+    @Test
+    @DisplayName("findAllById returns the animes in request order and marks unknown ids as not found")
+    void findAllById_ReturnLookupsInRequestOrder_WhenSomeIdsDoNotExist() {
+        BDDMockito.when(animeRepository.findByIds(ArgumentMatchers.aryEq(new Integer[]{2, 3, 1})))
+                .thenReturn(Flux.just(validAnime, validAnime.withId(2)));
+        StepVerifier.create(animeService.findAllById(List.of(2, 3, 1, 2)))
+                .expectSubscription()
+                .expectNext(new AnimeLookup(2, true, validAnime.withId(2)),
+                        new AnimeLookup(3, false, null),
+                        new AnimeLookup(1, true, validAnime),
+                        new AnimeLookup(2, true, validAnime.withId(2)))
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("findAllById returns Mono error when too many ids are requested")
+    void findAllById_ReturnsError_WhenTooManyIds() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getLookup().setMaxIds(1);
+        animeService = createAnimeService(animeProperties);
+        StepVerifier.create(animeService.findAllById(List.of(1, 2)))
+                .expectSubscription()
+                .expectError(ResponseStatusException.class)
+                .verify();
+        BDDMockito.verify(animeRepository, Mockito.never()).findByIds(ArgumentMatchers.any(Integer[].class));
+    }
+
     @Test
     @DisplayName("save creates an anime when successful")
     void save_CreatesAnime_WhenSuccessful() {
@@ -120,48 +322,122 @@ class AnimeServiceTest {
     void batchSave_ReturnsMonoError_WhenContainsInvalidName() {
         StepVerifier.create(animeService.batchSave(List.of(anime, anime.withName(""))))
                 .expectSubscription()
-                .expectNext(validAnime)
                 .expectError(ResponseStatusException.class)
                 .verify();
+        BDDMockito.verify(animeRepository, Mockito.never()).insertAll(ArgumentMatchers.anyList());
+    }
+
+    @Test
+    @DisplayName("batchSave writes the animes in chunks and keeps the request order")
+    void batchSave_WritesChunksInOrder_WhenListIsBiggerThanChunkSize() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getBatch().setChunkSize(1);
+        animeService = createAnimeService(animeProperties);
+        Anime otherAnime = anime.withName("Other name");
+        BDDMockito.when(animeRepository.insertAll(List.of(anime)))
+                .thenReturn(Flux.just(validAnime));
+        BDDMockito.when(animeRepository.insertAll(List.of(otherAnime)))
+                .thenReturn(Flux.just(otherAnime.withId(2)));
+        StepVerifier.create(animeService.batchSave(List.of(anime, otherAnime)))
+                .expectSubscription()
+                .expectNext(validAnime, otherAnime.withId(2))
+                .verifyComplete();
     }
 
     @Test
     @DisplayName("delete removes the anime when successful")
     void delete_RemovesTheAnime_WhenSuccessful() {
-        StepVerifier.create(animeService.delete(1))
+        StepVerifier.create(animeService.delete(1, null))
                 .expectSubscription()
                 .verifyComplete();
+        BDDMockito.verify(animeRepository, Mockito.never()).findById(ArgumentMatchers.anyInt());
+        BDDMockito.verify(cacheInvalidationBus).publishAnime(1);
     }
 
     @Test
     @DisplayName("delete returns Mono error when anime does not exist")
     void delete_ReturnsMonoError_WhenEmptyMonoIsReturned() {
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+        BDDMockito.when(animeRepository.deleteAndReturnId(ArgumentMatchers.anyInt()))
                 .thenReturn(Mono.empty());
-        StepVerifier.create(animeService.delete(1))
+        StepVerifier.create(animeService.delete(1, null))
                 .expectSubscription()
-                .expectError(ResponseStatusException.class)
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.NOT_FOUND)
                 .verify();
     }
 
     @Test
-    @DisplayName("update save updated anime and returns empty Mono when successful")
+    @DisplayName("delete returns Mono error with precondition failed when the version does not match")
+    void delete_ReturnsPreconditionFailed_WhenVersionDoesNotMatch() {
+        BDDMockito.when(animeRepository.deleteAndReturnIdIfVersion(1, 0L))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(true));
+        StepVerifier.create(animeService.delete(1, 0L))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.PRECONDITION_FAILED)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("update saves the anime with a single statement and returns it with the new version")
     void update_SaveUpdatedAnime_WhenSuccessful() {
-        BDDMockito.when(animeRepository.save(updatedAnime))
+        StepVerifier.create(animeService.update(updatedAnime, null))
+                .expectSubscription()
+                .expectNext(updatedAnime)
+                .verifyComplete();
+        BDDMockito.verify(animeRepository, Mockito.never()).findById(ArgumentMatchers.anyInt());
+        BDDMockito.verify(cacheInvalidationBus).publishAnime(updatedAnime.getId());
+    }
+
+    @Test
+    @DisplayName("update returns the anime with the new version when the expected version matches")
+    void update_SaveUpdatedAnime_WhenVersionMatches() {
+        BDDMockito.when(animeRepository.updateNameIfVersion(1, updatedAnime.getName(), 0L))
                 .thenReturn(Mono.just(updatedAnime));
-        StepVerifier.create(animeService.update(updatedAnime))
+        StepVerifier.create(animeService.update(updatedAnime, 0L))
                 .expectSubscription()
+                .expectNext(updatedAnime)
                 .verifyComplete();
     }
 
     @Test
     @DisplayName("update returns Mono error when anime does not exist")
     void update_ReturnsMonoError_WhenEmptyMonoIsReturned() {
-        BDDMockito.when(animeRepository.findById(ArgumentMatchers.anyInt()))
+        BDDMockito.when(animeRepository.updateName(ArgumentMatchers.anyInt(), ArgumentMatchers.anyString()))
                 .thenReturn(Mono.empty());
-        StepVerifier.create(animeService.update(updatedAnime))
+        StepVerifier.create(animeService.update(updatedAnime, null))
                 .expectSubscription()
-                .expectError(ResponseStatusException.class)
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.NOT_FOUND)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("update returns Mono error with precondition failed when the version does not match")
+    void update_ReturnsPreconditionFailed_WhenVersionDoesNotMatch() {
+        BDDMockito.when(animeRepository.updateNameIfVersion(1, updatedAnime.getName(), 0L))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.just(true));
+        StepVerifier.create(animeService.update(updatedAnime, 0L))
+                .expectSubscription()
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.PRECONDITION_FAILED)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("update returns gateway timeout when the existence check of a failed conditional update exceeds the deadline")
+    void update_ReturnsGatewayTimeout_WhenExistenceCheckExceedsDeadline() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getDeadlines().getOperations().put("update", Duration.ofSeconds(1));
+        animeService = createAnimeService(animeProperties);
+        BDDMockito.when(animeRepository.updateNameIfVersion(1, updatedAnime.getName(), 0L))
+                .thenReturn(Mono.empty());
+        BDDMockito.when(animeRepository.existsById(1))
+                .thenReturn(Mono.never());
+        StepVerifier.withVirtualTime(() -> animeService.update(updatedAnime, 0L))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(1))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT)
                 .verify();
     }
-}
\ No newline at end of file
+}
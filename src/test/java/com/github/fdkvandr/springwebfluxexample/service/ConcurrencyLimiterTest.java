@@ -0,0 +1,112 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+
+class ConcurrencyLimiterTest {
+
+    private ConcurrencyLimiter concurrencyLimiter;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        concurrencyLimiter = createConcurrencyLimiter(2, 4, meterRegistry);
+    }
+
+    private static ConcurrencyLimiter createConcurrencyLimiter(int initialLimit, int maxLimit,
+                                                               SimpleMeterRegistry meterRegistry) {
+        AnimeProperties animeProperties = new AnimeProperties();
+        AnimeProperties.ConcurrencyLimit read = animeProperties.getConcurrency().getRead();
+        read.setInitialLimit(initialLimit);
+        read.setMinLimit(1);
+        read.setMaxLimit(maxLimit);
+        read.setLatencyThreshold(Duration.ofSeconds(10));
+        read.setBackoffRatio(0.5);
+        return new ConcurrencyLimiter(animeProperties, meterRegistry);
+    }
+
+    @Test
+    @DisplayName("read rejects with 503 once the limit is in flight and admits again after an operation finished")
+    void read_ReturnsServiceUnavailable_WhenLimitIsInFlight() {
+        Sinks.One<String> first = Sinks.one();
+        Sinks.One<String> second = Sinks.one();
+        concurrencyLimiter.read(first.asMono()).subscribe();
+        concurrencyLimiter.read(second.asMono()).subscribe();
+
+        StepVerifier.create(concurrencyLimiter.read(Mono.just("third")))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex && ex.getStatusCode() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+        Assertions.assertEquals(1, meterRegistry.get("anime.concurrency.rejections").tag("kind", "read").counter().count());
+
+        first.tryEmitValue("first");
+        StepVerifier.create(concurrencyLimiter.read(Mono.just("third")))
+                .expectNext("third")
+                .verifyComplete();
+    }
+
+    @Test
+    @DisplayName("read grows the limit on fast operations while it is in use and backs off on timeouts")
+    void read_AdaptsLimit_WhenOperationsAreFastOrTimeOut() {
+        StepVerifier.create(concurrencyLimiter.read(Mono.just("fast")))
+                .expectNext("fast")
+                .verifyComplete();
+        Assertions.assertEquals(3, limit());
+
+        StepVerifier.create(concurrencyLimiter.read(Mono.error(new TimeoutException())))
+                .expectError(TimeoutException.class)
+                .verify();
+        Assertions.assertEquals(1, limit());
+        Assertions.assertEquals(0, meterRegistry.get("anime.concurrency.in.flight").tag("kind", "read").gauge().value());
+    }
+
+    @Test
+    @DisplayName("read backs off once when many operations time out together and again for operations started after it")
+    void read_BacksOffOnce_WhenOperationsTimeOutTogether() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        ConcurrencyLimiter limiter = createConcurrencyLimiter(8, 8, registry);
+        List<Sinks.One<String>> operations = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            Sinks.One<String> operation = Sinks.one();
+            limiter.read(operation.asMono()).subscribe(it -> {}, e -> {});
+            operations.add(operation);
+        }
+
+        operations.forEach(operation -> operation.tryEmitError(new TimeoutException()));
+        Assertions.assertEquals(4, limit(registry));
+
+        StepVerifier.create(limiter.read(Mono.error(new TimeoutException())))
+                .expectError(TimeoutException.class)
+                .verify();
+        Assertions.assertEquals(2, limit(registry));
+    }
+
+    private double limit() {
+        return limit(meterRegistry);
+    }
+
+    private static double limit(SimpleMeterRegistry registry) {
+        return registry.get("anime.concurrency.limit").tag("kind", "read").gauge().value();
+    }
+}
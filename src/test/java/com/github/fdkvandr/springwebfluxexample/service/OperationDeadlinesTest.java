@@ -0,0 +1,62 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+
+class OperationDeadlinesTest {
+
+    private OperationDeadlines operationDeadlines;
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        animeProperties.getDeadlines().setRead(Duration.ofSeconds(1));
+        animeProperties.getDeadlines().getOperations().put("findAll", Duration.ofSeconds(5));
+        operationDeadlines = new OperationDeadlines(animeProperties);
+    }
+
+    @Test
+    @DisplayName("read fails with 504 caused by a timeout when the operation exceeds its deadline")
+    void read_ReturnsGatewayTimeout_WhenDeadlineExceeded() {
+        StepVerifier.withVirtualTime(() -> operationDeadlines.read("findById", Mono.never()))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(1))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+                        && ex.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT
+                        && ex.getCause() instanceof TimeoutException)
+                .verify();
+    }
+
+    @Test
+    @DisplayName("read of a stream applies the deadline of its operation between elements instead of to the whole stream")
+    void read_AppliesDeadlineBetweenElements_WhenStreaming() {
+        StepVerifier.withVirtualTime(() -> operationDeadlines.read("findAll", Flux.interval(Duration.ofSeconds(4)).take(3)))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(12))
+                .expectNext(0L, 1L, 2L)
+                .verifyComplete();
+        StepVerifier.withVirtualTime(() -> operationDeadlines.read("findAll", Flux.interval(Duration.ofSeconds(6))))
+                .expectSubscription()
+                .thenAwait(Duration.ofSeconds(5))
+                .expectErrorMatches(e -> e instanceof ResponseStatusException ex
+                        && ex.getStatusCode() == HttpStatus.GATEWAY_TIMEOUT)
+                .verify();
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.fdkvandr.springwebfluxexample.service;
+
+import com.github.fdkvandr.springwebfluxexample.cache.CacheInvalidationBus;
+import com.github.fdkvandr.springwebfluxexample.cache.UserCache;
+import com.github.fdkvandr.springwebfluxexample.configuration.AnimeProperties;
+import com.github.fdkvandr.springwebfluxexample.domain.User;
+import com.github.fdkvandr.springwebfluxexample.repository.UserRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.BDDMockito;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import reactor.blockhound.BlockHound;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+@ExtendWith(SpringExtension.class)
+class UserServiceTest {
+
+    private UserService userService;
+
+    @Mock
+    private UserRepository userRepository;
+
+    @Mock
+    private CacheInvalidationBus cacheInvalidationBus;
+
+    private final User user = new User(1, "Andrey", "user", "{noop}password", "ROLE_USER");
+
+    @BeforeAll
+    public static void blockHoundSetup() {
+        BlockHound.install();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        AnimeProperties animeProperties = new AnimeProperties();
+        userService = new UserService(userRepository, new UserCache(animeProperties, new SimpleMeterRegistry()),
+                cacheInvalidationBus);
+        BDDMockito.when(userRepository.findByUsername(user.getUsername()))
+                .thenReturn(Mono.just(user));
+        BDDMockito.when(userRepository.findByUsername("unknown"))
+                .thenReturn(Mono.empty());
+    }
+
+    @Test
+    @DisplayName("findByUsername serves repeated lookups from the cache")
+    void findByUsername_QueriesRepositoryOnce_WhenCalledRepeatedly() {
+        StepVerifier.create(userService.findByUsername("user").then(userService.findByUsername("user")))
+                .expectSubscription()
+                .expectNext(user)
+                .verifyComplete();
+        BDDMockito.verify(userRepository, Mockito.times(1)).findByUsername("user");
+    }
+
+    @Test
+    @DisplayName("findByUsername shares one query between concurrent lookups of the same user")
+    void findByUsername_CoalescesConcurrentLookups_WhenUserIsNotCached() {
+        Sinks.One<User> result = Sinks.one();
+        BDDMockito.when(userRepository.findByUsername("slow"))
+                .thenReturn(result.asMono());
+        StepVerifier.create(Mono.zip(userService.findByUsername("slow"), userService.findByUsername("slow")))
+                .expectSubscription()
+                .then(() -> result.tryEmitValue(new User(2, "Andrey", "slow", "{noop}password", "ROLE_USER")))
+                .expectNextCount(1)
+                .verifyComplete();
+        BDDMockito.verify(userRepository, Mockito.times(1)).findByUsername("slow");
+    }
+
+    @Test
+    @DisplayName("findByUsername queries the repository again after the user was evicted")
+    void findByUsername_QueriesRepositoryAgain_WhenUserWasEvicted() {
+        StepVerifier.create(userService.findByUsername("user")
+                        .doOnNext(it -> userService.evict("user"))
+                        .then(userService.findByUsername("user")))
+                .expectSubscription()
+                .expectNext(user)
+                .verifyComplete();
+        BDDMockito.verify(userRepository, Mockito.times(2)).findByUsername("user");
+        BDDMockito.verify(cacheInvalidationBus).publishUser("user");
+    }
+
+    @Test
+    @DisplayName("findByUsername returns empty Mono and does not cache unknown users")
+    void findByUsername_ReturnEmptyMono_WhenUserDoesNotExist() {
+        StepVerifier.create(userService.findByUsername("unknown").then(userService.findByUsername("unknown")))
+                .expectSubscription()
+                .verifyComplete();
+        BDDMockito.verify(userRepository, Mockito.times(2)).findByUsername(ArgumentMatchers.eq("unknown"));
+    }
+}
@@ -14,6 +14,7 @@ public class AnimeCreator {
         return Anime.builder()
                 .id(1)
                 .name("Some name")
+                .version(0L)
                 .build();
     }
 
@@ -21,6 +22,7 @@ public class AnimeCreator {
         return Anime.builder()
                 .id(1)
                 .name("Some name 2")
+                .version(1L)
                 .build();
     }
 }